@@ -0,0 +1,16 @@
+package org.densmnko;
+
+import org.junit.runners.Suite;
+
+@ParallelSuiteRunner.Suites(
+        isolate = {"org.densmnko.TinyTest"},
+        value = {
+                @Suite.SuiteClasses({TinyTest.class})
+                , @Suite.SuiteClasses({TinyTest.class})
+                , @Suite.SuiteClasses({TinyTest.class})
+                , @Suite.SuiteClasses({TinyTest.class})
+        })
+public class BenchmarkSuite {
+
+    static final int LANES = 4;
+}
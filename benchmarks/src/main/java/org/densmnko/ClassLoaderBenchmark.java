@@ -0,0 +1,56 @@
+package org.densmnko;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ParallelRunnerClassLoader#loadClass} latency: delegated to the parent, isolated and already defined, isolated
+ * and defined by a fresh lane loader from the shared class bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLoaderBenchmark {
+
+    static final String[] ISOLATE = {"org.densmnko.TinyTest"};
+
+    private ParallelRunnerClassLoader loader;
+
+    @Setup
+    public void setUp() throws ClassNotFoundException {
+        loader = newLoader();
+        loader.loadClass(TinyTest.class.getName());
+    }
+
+    private ParallelRunnerClassLoader newLoader() {
+        return new ParallelRunnerClassLoader(0, getClass().getClassLoader(), ISOLATE);
+    }
+
+    @Benchmark
+    public Class<?> delegated() throws ClassNotFoundException {
+        return loader.loadClass("org.junit.Test");
+    }
+
+    @Benchmark
+    public Class<?> isolatedLoaded() throws ClassNotFoundException {
+        return loader.loadClass(TinyTest.class.getName());
+    }
+
+    @Benchmark
+    public Class<?> isolatedDefined() throws ClassNotFoundException {
+        return newLoader().loadClass(TinyTest.class.getName());
+    }
+}
@@ -0,0 +1,14 @@
+package org.densmnko;
+
+import java.io.OutputStream;
+
+class NullOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+}
@@ -0,0 +1,77 @@
+package org.densmnko;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RunnerOutputStream} write throughput, benchmark threads spread over the given number of lanes. Lanes are
+ * drained every {@link #DRAIN_EVERY} writes, as events would do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class OutputStreamBenchmark {
+
+    static final int DRAIN_EVERY = 1024;
+    static final byte[] LINE = "1: class org.densmnko.Foo:foo, 4242@host, thread: Thread[runner-0,5,parallel-runner]\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"1", "4", "8"})
+    int lanes;
+
+    RunnerOutputStream stream;
+    ParallelRunnerClassLoader[] loaders;
+
+    @Setup
+    public void setUp() {
+        stream = new RunnerOutputStream();
+        loaders = new ParallelRunnerClassLoader[lanes];
+        for (int i = 0; i < lanes; i++) {
+            loaders[i] = new ParallelRunnerClassLoader(i, getClass().getClassLoader(), new String[0]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lane {
+        int writes;
+
+        @Setup
+        public void bind(OutputStreamBenchmark benchmark, ThreadParams threadParams) {
+            Thread.currentThread().setContextClassLoader(benchmark.loaders[threadParams.getThreadIndex() % benchmark.lanes]);
+        }
+    }
+
+    @Benchmark
+    public void writeLine(Lane lane) {
+        stream.write(LINE, 0, LINE.length);
+        if (++lane.writes % DRAIN_EVERY == 0) {
+            stream.getAndReset();
+        }
+    }
+
+    @Benchmark
+    public void writeByte(Lane lane) {
+        stream.write('x');
+        if (++lane.writes % (DRAIN_EVERY * LINE.length) == 0) {
+            stream.getAndReset();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunNotifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per event of {@link ParallelSuiteRunner.RunNotifierRecorder}: recording with output capture and replay into a
+ * notifier without listeners.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecorderBenchmark {
+
+    static final int TESTS = 500;
+
+    private PrintStream systemOut;
+    private RunnerOutputStream stream;
+    private PrintStream replayOut;
+    private final Description[] tests = new Description[TESTS];
+    private final RunNotifier notifier = new RunNotifier();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < TESTS; i++) {
+            tests[i] = Description.createTestDescription(TinyTest.class, "test" + i);
+        }
+        stream = new RunnerOutputStream();
+        replayOut = new PrintStream(new NullOutputStream());
+        Thread.currentThread().setContextClassLoader(new ParallelRunnerClassLoader(0, getClass().getClassLoader(), new String[0]));
+        systemOut = System.out;
+        System.setOut(new PrintStream(stream));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(systemOut);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TESTS * 2)
+    public ParallelSuiteRunner.RunNotifierRecorder record() {
+        final ParallelSuiteRunner.RunNotifierRecorder recorder = new ParallelSuiteRunner.RunNotifierRecorder(stream, replayOut);
+        for (Description test : tests) {
+            recorder.fireTestStarted(test);
+            recorder.fireTestFinished(test);
+        }
+        return recorder;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TESTS * 2)
+    public void recordAndReplay() {
+        record().replay(notifier);
+    }
+}
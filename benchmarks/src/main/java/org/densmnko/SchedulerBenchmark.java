@@ -0,0 +1,68 @@
+package org.densmnko;
+
+import org.junit.internal.builders.AllDefaultPossibilitiesBuilder;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link NaiveScheduler#schedule} and {@link NaiveScheduler#finished} with thousands of tiny runners spread over
+ * {@link BenchmarkSuite#LANES} lanes, including lane thread start-up and replay into the notifier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    @Param({"1000", "10000"})
+    int runners;
+
+    private PrintStream systemOut;
+    private ParallelSuiteRunner suite;
+    private List<Runner> children;
+    private final RunNotifier notifier = new RunNotifier();
+
+    @Setup
+    public void setUp() throws Exception {
+        systemOut = System.out;
+        System.setOut(new PrintStream(new NullOutputStream()));
+        suite = new ParallelSuiteRunner(BenchmarkSuite.class, new AllDefaultPossibilitiesBuilder());
+        children = suite.getChildren();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(systemOut);
+    }
+
+    @Benchmark
+    public void scheduleAndRun() {
+        final NaiveScheduler scheduler = new NaiveScheduler(BenchmarkSuite.LANES, suite);
+        try {
+            for (int i = 0; i < runners; i++) {
+                scheduler.schedule(suite.new ParallelRunnable(children.get(i % children.size()), notifier));
+            }
+            scheduler.finished();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
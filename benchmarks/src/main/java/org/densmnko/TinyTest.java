@@ -0,0 +1,13 @@
+package org.densmnko;
+
+import org.junit.Test;
+
+/**
+ * Smallest possible test class, so benchmarks measure the runner and not the tests.
+ */
+public class TinyTest {
+
+    @Test
+    public void test() {
+    }
+}
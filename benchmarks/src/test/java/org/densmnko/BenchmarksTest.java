@@ -0,0 +1,52 @@
+package org.densmnko;
+
+import org.junit.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Smoke run of every benchmark in this JVM with a single short iteration, so a benchmark broken by a change of the
+ * runner fails the build rather than the next measurement.
+ */
+public class BenchmarksTest {
+
+    @Test
+    public void everyBenchmarkRuns() throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include("org\\.densmnko\\..*Benchmark")
+                .forks(0)
+                .threads(2)
+                .warmupIterations(0)
+                .measurementIterations(1)
+                .measurementTime(TimeValue.milliseconds(100))
+                .param("runners", "10")
+                .param("lanes", "2")
+                .shouldFailOnError(true)
+                .build();
+
+        final Collection<RunResult> results = new Runner(options).run();
+
+        final Set<String> classes = new TreeSet<>();
+        for (RunResult result : results) {
+            final String benchmark = result.getParams().getBenchmark();
+            classes.add(benchmark.substring(0, benchmark.lastIndexOf('.')));
+            assertTrue(benchmark, result.getPrimaryResult().getScore() > 0);
+        }
+        final Set<String> expected = new TreeSet<>();
+        for (Class<?> type : new Class<?>[]{ClassLoaderBenchmark.class, OutputStreamBenchmark.class, RecorderBenchmark.class, SchedulerBenchmark.class}) {
+            expected.add(type.getName());
+        }
+        assertEquals(expected, classes);
+    }
+}
@@ -0,0 +1,55 @@
+package org.densmnko;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Output drained from a {@link LaneBuffer}: spilled part first, then in-memory chunks. Transferred to the real stream
+ * byte by byte, without decoding.
+ */
+public class CapturedOutput {
+
+    static final CapturedOutput EMPTY = new CapturedOutput(null, Collections.emptyList(), 0);
+
+    private LaneBuffer.Spill spill;
+    private final List<byte[]> chunks;
+    private final int lastLength;
+
+    CapturedOutput(LaneBuffer.Spill spill, List<byte[]> chunks, int lastLength) {
+        this.spill = spill;
+        this.chunks = chunks;
+        this.lastLength = lastLength;
+    }
+
+    public boolean isEmpty() {
+        return spill == null && (chunks.isEmpty() || chunks.size() == 1 && lastLength == 0);
+    }
+
+    public long size() {
+        long size = spill == null ? 0 : spill.size;
+        if (!chunks.isEmpty()) {
+            size += (long) (chunks.size() - 1) * LaneBuffer.CHUNK_SIZE + lastLength;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the output and releases its spill file. Can be called once.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (spill != null) {
+            try {
+                spill.read(new byte[LaneBuffer.CHUNK_SIZE], (b, len) -> out.write(b, 0, len));
+            } finally {
+                spill.release();
+                spill = null;
+            }
+        }
+        final int last = chunks.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            out.write(chunks.get(i), 0, i == last ? lastLength : LaneBuffer.CHUNK_SIZE);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.densmnko;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * <code>System.out</code> / <code>System.err</code> of a run. {@link PrintStream} synchronizes every print on itself,
+ * which would make all lanes contend on one monitor; this one hands bytes straight to the demultiplexing stream,
+ * so lanes only ever touch their own buffers. A <code>println</code> is written with a single call, so a line is never
+ * split by another thread of the same lane.
+ */
+class CapturingPrintStream extends PrintStream {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final OutputStream target;
+    private final Charset charset = Charset.defaultCharset();
+
+    CapturingPrintStream(OutputStream target) {
+        super(target, false);
+        this.target = target;
+    }
+
+    private void write(String s) {
+        final byte[] bytes = s.getBytes(charset);
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(int b) {
+        try {
+            target.write(b);
+        } catch (IOException e) {
+            setError();
+        }
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        try {
+            target.write(buf, off, len);
+        } catch (IOException e) {
+            setError();
+        }
+    }
+
+    @Override
+    public void flush() {
+        // buffered per lane until the events are replayed
+    }
+
+    @Override
+    public void close() {
+        // System.out and System.err are never closed
+    }
+
+    @Override
+    public void print(boolean b) {
+        write(String.valueOf(b));
+    }
+
+    @Override
+    public void print(char c) {
+        write(String.valueOf(c));
+    }
+
+    @Override
+    public void print(int i) {
+        write(String.valueOf(i));
+    }
+
+    @Override
+    public void print(long l) {
+        write(String.valueOf(l));
+    }
+
+    @Override
+    public void print(float f) {
+        write(String.valueOf(f));
+    }
+
+    @Override
+    public void print(double d) {
+        write(String.valueOf(d));
+    }
+
+    @Override
+    public void print(char[] s) {
+        write(new String(s));
+    }
+
+    @Override
+    public void print(String s) {
+        write(String.valueOf(s));
+    }
+
+    @Override
+    public void print(Object obj) {
+        write(String.valueOf(obj));
+    }
+
+    @Override
+    public void println() {
+        write(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(boolean x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(char x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(int x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(long x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(float x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(double x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(char[] x) {
+        write(new String(x) + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(String x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(Object x) {
+        write(x + LINE_SEPARATOR);
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args) {
+        write(String.format(format, args));
+        return this;
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+        write(String.format(l, format, args));
+        return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq) {
+        write(String.valueOf(csq));
+        return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq, int start, int end) {
+        write((csq == null ? "null" : csq).subSequence(start, end).toString());
+        return this;
+    }
+
+    @Override
+    public PrintStream append(char c) {
+        write(String.valueOf(c));
+        return this;
+    }
+}
@@ -0,0 +1,373 @@
+package org.densmnko;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only cache of class bytes shared by all {@link ParallelRunnerClassLoader}s over the same classpath during a run.
+ * Jars are memory-mapped and indexed by their central directory once; bytes of a class are read and inflated on the
+ * first request and served from memory to every following lane. The cache is {@link #release(URL[]) released} when
+ * the run ends, so the next run in the same JVM sees classes and jars as they are by then.
+ */
+class ClassBytesCache {
+
+    private static final Map<List<URL>, ClassBytesCache> CACHES = new ConcurrentHashMap<>();
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_ENTRY = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+    static class ClassBytes {
+        final byte[] bytes;
+        final CodeSource codeSource;
+        // manifest of the jar, for the package of the class; null for directories and jars without one
+        final Manifest manifest;
+
+        ClassBytes(byte[] bytes, CodeSource codeSource, Manifest manifest) {
+            this.bytes = bytes;
+            this.codeSource = codeSource;
+            this.manifest = manifest;
+        }
+    }
+
+    private final URL[] urls;
+    private final List<Source> sources = new ArrayList<>();
+    private final Map<String, Optional<ClassBytes>> classes = new ConcurrentHashMap<>();
+
+    private ClassBytesCache(URL[] urls) {
+        this.urls = urls;
+        final Set<URL> seen = new LinkedHashSet<>();
+        for (URL url : urls) {
+            index(url, seen);
+        }
+    }
+
+    static ClassBytesCache of(URL[] urls) {
+        return CACHES.computeIfAbsent(Arrays.asList(urls), u -> new ClassBytesCache(urls));
+    }
+
+    /**
+     * Drops the cache of the classpath and the bytes it holds, misses included. Loaders which still use it re-read
+     * classes on demand; its mapped jars are unmapped once those loaders are gone.
+     */
+    static void release(URL[] urls) {
+        final ClassBytesCache cache = CACHES.remove(Arrays.asList(urls));
+        if (cache != null) {
+            cache.classes.clear();
+        }
+    }
+
+    /**
+     * Classpath of a class loader: its URLs, or <code>java.class.path</code> for the application class loader of
+     * Java 9+, which is not a {@link URLClassLoader}.
+     */
+    static URL[] classpath(ClassLoader loader) {
+        if (loader instanceof URLClassLoader) {
+            return ((URLClassLoader) loader).getURLs();
+        }
+        final List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                try {
+                    urls.add(new File(entry).toURI().toURL());
+                } catch (MalformedURLException e) {
+                    // skip it, as the application class loader does
+                }
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    URL[] getURLs() {
+        return urls;
+    }
+
+    /**
+     * @return bytes of the class, or <code>null</code> if the class is not on the classpath or can not be read here,
+     * which includes classes of signed jars: only a {@link URLClassLoader} verifies them and knows their signers
+     */
+    ClassBytes get(String className) {
+        return classes.computeIfAbsent(className, this::read).orElse(null);
+    }
+
+    private Optional<ClassBytes> read(String className) {
+        final String entry = className.replace('.', '/') + ".class";
+        for (Source source : sources) {
+            try {
+                final byte[] bytes = source.read(entry);
+                if (bytes != null) {
+                    return source.signed ? Optional.empty() : Optional.of(new ClassBytes(bytes, source.codeSource, source.manifest));
+                }
+            } catch (IOException | DataFormatException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void index(URL url, Set<URL> seen) {
+        if (!seen.add(url) || !"file".equals(url.getProtocol())) {
+            return;
+        }
+        final File file;
+        try {
+            file = new File(url.toURI());
+        } catch (Exception e) {
+            return;
+        }
+        final CodeSource codeSource = new CodeSource(url, (Certificate[]) null);
+        if (file.isDirectory()) {
+            sources.add(new DirectorySource(file, codeSource));
+        } else if (file.isFile()) {
+            final Source source = jar(file, codeSource);
+            if (source == null) {
+                return;
+            }
+            sources.add(source);
+            for (URL classPath : manifestClassPath(source.manifest, url)) {
+                index(classPath, seen);
+            }
+        }
+    }
+
+    private static Source jar(File file, CodeSource codeSource) {
+        Source source;
+        try {
+            source = new MappedJarSource(file, codeSource);
+        } catch (IOException | RuntimeException e) {
+            // zip64, huge or otherwise unusual jar
+            try {
+                source = new JarFileSource(new JarFile(file), codeSource);
+            } catch (IOException notAJar) {
+                return null;
+            }
+        }
+        try {
+            final byte[] bytes = source.read(JarFile.MANIFEST_NAME);
+            if (bytes != null) {
+                source.manifest = new Manifest(new ByteArrayInputStream(bytes));
+            }
+        } catch (IOException | DataFormatException e) {
+            // no manifest then
+        }
+        source.signed = source.hasSignatures();
+        return source;
+    }
+
+    private static List<URL> manifestClassPath(Manifest manifest, URL base) {
+        final List<URL> urls = new ArrayList<>();
+        final String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (classPath != null) {
+            for (String entry : classPath.trim().split("\\s+")) {
+                if (!entry.isEmpty()) {
+                    try {
+                        urls.add(new URL(base, entry));
+                    } catch (MalformedURLException e) {
+                        // skip it, as URLClassLoader does
+                    }
+                }
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * @return <code>true</code> for the signature file of a signer, e.g. <code>META-INF/SIGNER.SF</code>
+     */
+    private static boolean isSignature(String entry) {
+        final String name = entry.toUpperCase(Locale.ROOT);
+        return name.startsWith("META-INF/") && name.endsWith(".SF") && name.indexOf('/', "META-INF/".length()) < 0;
+    }
+
+    private abstract static class Source {
+        final CodeSource codeSource;
+        // set once the jar is indexed
+        Manifest manifest;
+        boolean signed;
+
+        Source(CodeSource codeSource) {
+            this.codeSource = codeSource;
+        }
+
+        abstract byte[] read(String entry) throws IOException, DataFormatException;
+
+        boolean hasSignatures() {
+            return false;
+        }
+    }
+
+    private static class DirectorySource extends Source {
+        private final File directory;
+
+        DirectorySource(File directory, CodeSource codeSource) {
+            super(codeSource);
+            this.directory = directory;
+        }
+
+        @Override
+        byte[] read(String entry) throws IOException {
+            final File file = new File(directory, entry);
+            return file.isFile() ? Files.readAllBytes(file.toPath()) : null;
+        }
+    }
+
+    private static class JarFileSource extends Source {
+        private final JarFile jar;
+
+        JarFileSource(JarFile jar, CodeSource codeSource) {
+            super(codeSource);
+            this.jar = jar;
+        }
+
+        @Override
+        boolean hasSignatures() {
+            return jar.stream().anyMatch(entry -> isSignature(entry.getName()));
+        }
+
+        @Override
+        byte[] read(String entry) throws IOException {
+            final ZipEntry zipEntry = jar.getEntry(entry);
+            if (zipEntry == null) {
+                return null;
+            }
+            try (InputStream in = jar.getInputStream(zipEntry)) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, n);
+                }
+                return bytes.toByteArray();
+            }
+        }
+    }
+
+    /**
+     * Jar mapped into memory, with its central directory parsed into an entry index.
+     */
+    private static class MappedJarSource extends Source {
+
+        private final MappedByteBuffer jar;
+        private final Map<String, int[]> entries = new HashMap<>();
+
+        MappedJarSource(File file, CodeSource codeSource) throws IOException {
+            super(codeSource);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                jar = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            jar.order(ByteOrder.LITTLE_ENDIAN);
+            int end = jar.limit() - 22;
+            final int lowest = Math.max(0, end - 0xFFFF);
+            while (end >= lowest && jar.getInt(end) != END_OF_CENTRAL_DIRECTORY) {
+                end--;
+            }
+            if (end < lowest) {
+                throw new IOException("no central directory in " + file);
+            }
+            final int count = jar.getShort(end + 10) & 0xFFFF;
+            final long offset = jar.getInt(end + 16) & 0xFFFFFFFFL;
+            if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+                throw new IOException("zip64 is not supported: " + file);
+            }
+            int position = (int) offset;
+            final byte[] name = new byte[0xFFFF];
+            for (int i = 0; i < count; i++) {
+                if (jar.getInt(position) != CENTRAL_DIRECTORY_ENTRY) {
+                    throw new IOException("broken central directory in " + file);
+                }
+                final int method = jar.getShort(position + 10) & 0xFFFF;
+                final int compressedSize = jar.getInt(position + 20);
+                final int size = jar.getInt(position + 24);
+                final int nameLength = jar.getShort(position + 28) & 0xFFFF;
+                final int extraLength = jar.getShort(position + 30) & 0xFFFF;
+                final int commentLength = jar.getShort(position + 32) & 0xFFFF;
+                final int localHeader = jar.getInt(position + 42);
+                for (int j = 0; j < nameLength; j++) {
+                    name[j] = jar.get(position + 46 + j);
+                }
+                entries.putIfAbsent(new String(name, 0, nameLength, StandardCharsets.UTF_8),
+                        new int[]{method, compressedSize, size, localHeader});
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+        }
+
+        @Override
+        boolean hasSignatures() {
+            return entries.keySet().stream().anyMatch(ClassBytesCache::isSignature);
+        }
+
+        @Override
+        byte[] read(String entry) throws IOException, DataFormatException {
+            final int[] e = entries.get(entry);
+            if (e == null) {
+                return null;
+            }
+            final int method = e[0], compressedSize = e[1], size = e[2], localHeader = e[3];
+            if (jar.getInt(localHeader) != LOCAL_FILE_HEADER) {
+                throw new IOException("broken local header of " + entry);
+            }
+            final int data = localHeader + 30 + (jar.getShort(localHeader + 26) & 0xFFFF) + (jar.getShort(localHeader + 28) & 0xFFFF);
+            // through Buffer: the covariant overrides of Java 9+ are missing on Java 8 when built by a newer javac
+            final ByteBuffer compressed = ((ByteBuffer) jar).duplicate();
+            ((Buffer) compressed).position(data);
+            ((Buffer) compressed).limit(data + compressedSize);
+            final byte[] bytes = new byte[size];
+            if (method == ZipEntry.STORED) {
+                compressed.get(bytes);
+            } else if (method == ZipEntry.DEFLATED) {
+                final byte[] input = new byte[compressedSize];
+                compressed.get(input);
+                final Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(input);
+                    int n = 0;
+                    while (n < size && !inflater.finished()) {
+                        final int inflated = inflater.inflate(bytes, n, size - n);
+                        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new DataFormatException("truncated entry " + entry);
+                        }
+                        n += inflated;
+                    }
+                } finally {
+                    inflater.end();
+                }
+            } else {
+                throw new IOException("unsupported compression method " + method + " of " + entry);
+            }
+            return bytes;
+        }
+    }
+
+}
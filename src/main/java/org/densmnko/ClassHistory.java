@@ -0,0 +1,114 @@
+package org.densmnko;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outcome and bytecode digest of every test class in its last run, kept in a small properties file under
+ * {@link TimingStore#directory()}, to order classes by: failed in the last run first, then changed or new since,
+ * then the rest; longest first within each of these.
+ */
+class ClassHistory {
+
+    static final String PRIORITIZE_PROPERTY = "parallel-runner.prioritize";
+
+    private static final int FAILED = 0;
+    private static final int CHANGED = 1;
+    private static final int UNCHANGED = 2;
+
+    private final File file;
+    private final ClassBytesCache classBytes;
+    // class name to "failed,digest" of its last run
+    private final Map<String, String> classes = new ConcurrentHashMap<>();
+    // digests of the bytecode of this run, by class name
+    private final Map<String, String> digests = new ConcurrentHashMap<>();
+    // classes recorded in this run, guarded by this
+    private final Set<String> recorded = new HashSet<>();
+
+    ClassHistory(File file, ClassBytesCache classBytes) {
+        this.file = file;
+        this.classBytes = classBytes;
+        if (file.isFile()) {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                // no history, every class is new
+                return;
+            }
+            properties.stringPropertyNames().forEach(name -> classes.put(name, properties.getProperty(name)));
+        }
+    }
+
+    static ClassHistory load(ClassLoader classLoader) {
+        return new ClassHistory(new File(TimingStore.directory(), "history.properties"),
+                ClassBytesCache.of(ClassBytesCache.classpath(classLoader)));
+    }
+
+    /**
+     * @return order to run classes in, by display name of their runners
+     */
+    Comparator<String> priority(TimingStore timings) {
+        return Comparator.comparingInt(this::rank)
+                .thenComparing(Comparator.comparingLong(timings::duration).reversed());
+    }
+
+    private int rank(String className) {
+        final String last = classes.get(className);
+        if (last == null) {
+            return CHANGED;
+        }
+        if (last.startsWith("true")) {
+            return FAILED;
+        }
+        final int comma = last.indexOf(',');
+        return comma < 0 || !last.substring(comma + 1).equals(digest(className)) ? CHANGED : UNCHANGED;
+    }
+
+    /**
+     * @return Base64 of the SHA-1 of the class bytes, empty if the class is not found on the classpath
+     */
+    private String digest(String className) {
+        return digests.computeIfAbsent(className, name -> {
+            final byte[] digest = IncrementalCache.digest(classBytes, name);
+            return digest == null ? "" : Base64.getEncoder().encodeToString(digest);
+        });
+    }
+
+    /**
+     * Records the outcome of a class which ran, along with its current bytecode. A class which runs more than once,
+     * e.g. in method shards, counts as failed if any of its runs failed.
+     */
+    synchronized void record(String className, boolean failed) {
+        if (recorded.add(className) || failed) {
+            classes.put(className, failed + "," + digest(className));
+        }
+    }
+
+    synchronized void save() {
+        recorded.clear();
+        digests.clear();
+        final Properties properties = new Properties();
+        classes.forEach(properties::setProperty);
+        final File dir = file.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "junit4-parallel-runner class history: failed in the last run, digest of the class bytes");
+        } catch (IOException e) {
+            System.err.println("unable to save class history to " + file + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.densmnko;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares the work list of a run with worker JVMs, possibly on other hosts, see {@link ParallelWorkerMain}. Every
+ * connected worker takes test classes from the tails of the lane queues, the same way an idle stealing lane does, and
+ * runs them one at a time; their events and output are replayed into the notifier as if a local lane ran them.
+ * A worker which connects when the queues are empty is let go.
+ * <p>
+ * The coordinator listens on the loopback interface unless told otherwise. A worker has to present the token of the
+ * run, from {@link #TOKEN_PROPERTY} or {@link #TOKEN_ENVIRONMENT}, before it gets any class; without one configured
+ * a random token is made up and printed.
+ */
+class Coordinator implements Closeable {
+
+    static final String TOKEN_PROPERTY = "parallel-runner.token";
+    static final String TOKEN_ENVIRONMENT = "PARALLEL_RUNNER_TOKEN";
+
+    private final int port;
+    private final String address;
+    private final String token;
+    // the token was made up, workers have to be told about it
+    private final boolean madeUp;
+    private final NaiveScheduler scheduler;
+    private final ParallelSuiteRunner parallelSuiteRunner;
+    private final Set<RemoteWorker> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger counter = new AtomicInteger();
+    private ServerSocket server;
+    private Thread acceptor;
+
+    /**
+     * @param address address to listen on, empty for the loopback interface
+     */
+    Coordinator(int port, String address, NaiveScheduler scheduler, ParallelSuiteRunner parallelSuiteRunner) {
+        this.port = port;
+        this.address = address;
+        final String configured = configuredToken();
+        // before any worker can connect
+        this.token = configured != null ? configured : newToken();
+        this.madeUp = configured == null;
+        this.scheduler = scheduler;
+        this.parallelSuiteRunner = parallelSuiteRunner;
+    }
+
+    /**
+     * @return token from {@link #TOKEN_PROPERTY} or {@link #TOKEN_ENVIRONMENT}, <code>null</code> if there is none
+     */
+    static String configuredToken() {
+        final String token = System.getProperty(TOKEN_PROPERTY, System.getenv(TOKEN_ENVIRONMENT));
+        return token == null || token.isEmpty() ? null : token;
+    }
+
+    /**
+     * Starts accepting workers.
+     */
+    void start(PrintStream out) throws IOException {
+        final InetAddress bindAddress = address.isEmpty() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(address);
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(bindAddress, port));
+        acceptor = new Thread(this::accept, "parallel-runner-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        out.format("parallel-runner: coordinator is waiting for workers on %s:%d%n", bindAddress.getHostAddress(), server.getLocalPort());
+        if (madeUp) {
+            out.format("parallel-runner: workers have to be started with -D%s=%s or %s set to it%n", TOKEN_PROPERTY, token, TOKEN_ENVIRONMENT);
+        }
+    }
+
+    private static String newToken() {
+        final byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private void accept() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                // closed
+                return;
+            } catch (IOException e) {
+                continue;
+            }
+            final RemoteWorker worker;
+            try {
+                worker = new RemoteWorker(socket);
+            } catch (IOException e) {
+                closeQuietly(socket);
+                continue;
+            }
+            workers.add(worker);
+            final Thread thread = new Thread(() -> serve(worker), String.format("runner-remote-%d", counter.getAndIncrement()));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(RemoteWorker worker) {
+        try {
+            if (!worker.handshake(token)) {
+                System.err.format("parallel-runner: %s is not a worker of this run, dropped%n", worker.getName());
+                return;
+            }
+            ParallelSuiteRunner.ParallelRunnable runnable;
+            while (!worker.isLost() && (runnable = scheduler.poll()) != null) {
+                try {
+                    parallelSuiteRunner.runRemote(runnable, worker);
+                } finally {
+                    scheduler.done(runnable);
+                }
+            }
+        } finally {
+            workers.remove(worker);
+            worker.close();
+        }
+    }
+
+    /**
+     * Stops accepting workers and drops the ones still connected.
+     */
+    @Override
+    public void close() {
+        if (server == null) {
+            return;
+        }
+        closeQuietly(server);
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.forEach(RemoteWorker::kill);
+        server = null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Runs only the tests present in a given set of leaf descriptions. Used to keep a runner which was re-created in
+ * another class loader in line with the (possibly filtered) original one.
+ */
+class DescriptionFilter extends Filter {
+
+    private final Set<Description> tests;
+
+    DescriptionFilter(Collection<Description> tests) {
+        this.tests = new HashSet<>(tests);
+    }
+
+    static DescriptionFilter of(Description description) {
+        final Set<Description> tests = new HashSet<>();
+        collectTests(description, tests);
+        return new DescriptionFilter(tests);
+    }
+
+    static void collectTests(Description description, Collection<Description> tests) {
+        if (description.isTest()) {
+            tests.add(description);
+        } else {
+            description.getChildren().forEach(d -> collectTests(d, tests));
+        }
+    }
+
+    @Override
+    public boolean shouldRun(Description description) {
+        if (description.isTest()) {
+            return tests.contains(description);
+        }
+        for (Description each : description.getChildren()) {
+            if (shouldRun(each)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String describe() {
+        return "tests " + tests;
+    }
+}
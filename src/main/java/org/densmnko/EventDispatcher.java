@@ -0,0 +1,121 @@
+package org.densmnko;
+
+import org.densmnko.ParallelSuiteRunner.RunNotifierRecorder;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams recorded events of all lanes into the real notifier as they arrive. Every lane has its own bounded channel,
+ * so a lane is held back only when the notifier can not keep up with it, and events of a lane keep their order.
+ * A single dispatcher thread drains the channels round-robin.
+ */
+class EventDispatcher {
+
+    static final int CHANNEL_CAPACITY = 1024;
+
+    private static final RunNotifierRecorder.Event CLOSE = new RunNotifierRecorder.Event(null, null, null, null);
+
+    private final BlockingQueue<RunNotifierRecorder.Event>[] channels;
+    private final Semaphore available = new Semaphore(0);
+    private final RunNotifier notifier;
+    private final PrintStream systemOut;
+    private final PrintStream systemErr;
+    private final Thread thread;
+    private volatile RuntimeException failure;
+
+    EventDispatcher(int lanes, RunNotifier notifier, PrintStream systemOut, PrintStream systemErr) {
+        this.notifier = notifier;
+        this.systemOut = systemOut;
+        this.systemErr = systemErr;
+        channels = newChannels(lanes + 1);
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new ArrayBlockingQueue<>(CHANNEL_CAPACITY);
+        }
+        thread = new Thread(this::dispatch, "parallel-runner-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static BlockingQueue<RunNotifierRecorder.Event>[] newChannels(int length) {
+        return new BlockingQueue[length];
+    }
+
+    /**
+     * Queues event of the lane, waiting for room in the lane channel if needed.
+     */
+    void publish(int lane, RunNotifierRecorder.Event event) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                channels[lane].put(event);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        available.release();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        int next = 0;
+        while (true) {
+            available.acquireUninterruptibly();
+            RunNotifierRecorder.Event event = null;
+            while (event == null) {
+                next = (next + 1) % channels.length;
+                event = channels[next].poll();
+            }
+            if (event == CLOSE) {
+                // lanes are done, drain what is left behind
+                for (BlockingQueue<RunNotifierRecorder.Event> channel : channels) {
+                    while ((event = channel.poll()) != null) {
+                        replay(event);
+                    }
+                }
+                return;
+            }
+            replay(event);
+        }
+    }
+
+    private void replay(RunNotifierRecorder.Event event) {
+        try {
+            RunNotifierRecorder.replayEvent(notifier, event, systemOut, systemErr);
+        } catch (RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Waits until all published events are dispatched.
+     *
+     * @throws RuntimeException first exception thrown by the notifier, e.g. {@link org.junit.runner.notification.StoppedByUserException}
+     */
+    void close() {
+        publish(channels.length - 1, CLOSE);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.densmnko;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stop signal of a run, raised after a number of failures, when the time budget is over or when a test asks the
+ * notifier to stop. Once raised, lane and method threads running tests are interrupted and classes not started yet
+ * are skipped.
+ */
+class FailFast {
+
+    private final int maxFailures;
+    private final long budgetMillis;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private volatile String reason;
+    private Timer timer;
+
+    /**
+     * @param maxFailures  failures to stop after, zero to never stop on failures
+     * @param budgetSeconds time budget of a run, zero for none
+     */
+    FailFast(int maxFailures, int budgetSeconds) {
+        this.maxFailures = maxFailures;
+        this.budgetMillis = TimeUnit.SECONDS.toMillis(budgetSeconds);
+    }
+
+    synchronized void started() {
+        failures.set(0);
+        reason = null;
+        if (budgetMillis > 0) {
+            timer = new Timer("parallel-runner-budget", true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    stop(String.format("time budget of %d s is over", TimeUnit.MILLISECONDS.toSeconds(budgetMillis)));
+                }
+            }, budgetMillis);
+        }
+    }
+
+    synchronized void finished() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    boolean isStopped() {
+        return reason != null;
+    }
+
+    /**
+     * @return why the run was stopped, or <code>null</code> if it was not
+     */
+    String getReason() {
+        return reason;
+    }
+
+    void failed() {
+        if (maxFailures > 0 && failures.incrementAndGet() >= maxFailures) {
+            stop(String.format("fail-fast after %d failure(s)", maxFailures));
+        }
+    }
+
+    /**
+     * Raises the signal and interrupts all other threads running a test class.
+     */
+    void stop(String why) {
+        synchronized (this) {
+            if (reason != null) {
+                return;
+            }
+            reason = why;
+        }
+        final Thread current = Thread.currentThread();
+        for (Thread thread : running) {
+            if (thread != current) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Marks current thread as running a test class or a method of one, so it is interrupted when the run stops.
+     */
+    void enter() {
+        final Thread current = Thread.currentThread();
+        running.add(current);
+        if (isStopped()) {
+            // stopped before the thread was registered
+            current.interrupt();
+        }
+    }
+
+    /**
+     * Clears interrupt left by {@link #stop(String)}, lane thread goes on to report skipped classes, method thread to
+     * the next method.
+     */
+    void exit() {
+        running.remove(Thread.currentThread());
+        if (isStopped()) {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the failure is an interrupt of a stopped run rather than a failure of the test
+     */
+    boolean isInterruption(Throwable exception) {
+        if (!isStopped()) {
+            return false;
+        }
+        for (Throwable t = exception; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof InterruptedIOException || t instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package org.densmnko;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tests which failed and were retried in previous runs, kept in a small properties file under
+ * {@link TimingStore#directory()}: how many times each was retried, and how many of those it passed on retry.
+ */
+class FlakyHistory {
+
+    private final File file;
+    // test display name to {retried, passed on retry}
+    private final Map<String, int[]> tests = new ConcurrentHashMap<>();
+
+    FlakyHistory(File file) {
+        this.file = file;
+        if (file.isFile()) {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                // no history then
+                return;
+            }
+            properties.stringPropertyNames().forEach(name -> {
+                final String[] counts = properties.getProperty(name).split(",");
+                try {
+                    tests.put(name, new int[]{Integer.parseInt(counts[0].trim()), Integer.parseInt(counts[1].trim())});
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // ignore broken entry
+                }
+            });
+        }
+    }
+
+    static FlakyHistory load() {
+        return new FlakyHistory(new File(TimingStore.directory(), "flaky.properties"));
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    void record(String test, boolean passedOnRetry) {
+        tests.merge(test, new int[]{1, passedOnRetry ? 1 : 0}, (previous, current) -> new int[]{previous[0] + 1, previous[1] + current[1]});
+    }
+
+    /**
+     * @return times the test passed on retry so far, this run included
+     */
+    int passedOnRetry(String test) {
+        final int[] counts = tests.get(test);
+        return counts == null ? 0 : counts[1];
+    }
+
+    void save() {
+        if (tests.isEmpty()) {
+            return;
+        }
+        final Properties properties = new Properties();
+        tests.forEach((name, counts) -> properties.setProperty(name, counts[0] + "," + counts[1]));
+        final File dir = file.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "junit4-parallel-runner retried tests: times retried, times passed on retry");
+        } catch (IOException e) {
+            System.err.println("unable to save flaky tests to " + file + ": " + e);
+        }
+    }
+}
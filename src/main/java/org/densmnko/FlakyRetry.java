@@ -0,0 +1,210 @@
+package org.densmnko;
+
+import org.densmnko.ParallelSuiteRunner.RunNotifierRecorder;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retries test methods which failed, right after their class ran and before its events are replayed. Failed methods of
+ * a class are retried in parallel, every attempt in a fresh class loader of the lane, so static state left by the
+ * failed attempt can not leak into it. A test which passes on retry is replayed as passed and reported as flaky.
+ */
+class FlakyRetry {
+
+    private final ParallelSuiteRunner parallelSuiteRunner;
+    private final RunnerOutputStream runnerStream;
+    private final int retries;
+    private final FlakyHistory history = FlakyHistory.load();
+    private final ExecutorService pool;
+    private final AtomicInteger flaky = new AtomicInteger();
+
+    /**
+     * Result of retrying a failed test.
+     */
+    static class Outcome {
+        final Description test;
+        final Failure failure;
+        final List<Failure> retryFailures = new ArrayList<>();
+        final List<RunNotifierRecorder.Event> output = new ArrayList<>();
+        int attempts;
+        boolean passed;
+
+        Outcome(Failure failure) {
+            this.test = failure.getDescription();
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * @param retries attempts a failed test gets before it is reported as failed
+     */
+    FlakyRetry(ParallelSuiteRunner parallelSuiteRunner, RunnerOutputStream runnerStream, int retries) {
+        this.parallelSuiteRunner = parallelSuiteRunner;
+        this.runnerStream = runnerStream;
+        this.retries = retries;
+        final AtomicInteger counter = new AtomicInteger();
+        pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            final Thread thread = new Thread(r, String.format("runner-retry-%d", counter.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Retries test methods which failed in the recorded run of the class, waits for all of them. Failures of tests
+     * which passed on retry are taken out of the recorded events, their output stays.
+     *
+     * @return outcomes of the retried tests, in the order they failed
+     */
+    List<Outcome> retry(ParallelSuiteRunner.ParallelRunnable runnable, int lane, RunNotifierRecorder recorder) {
+        final List<Outcome> outcomes = new ArrayList<>();
+        for (RunNotifierRecorder.Event event : recorder.events) {
+            if (event.method == RunNotifierRecorder.Method.fireTestFailure) {
+                final Failure failure = (Failure) event.parameter;
+                // class-level failures, e.g. in @BeforeClass, are not retried
+                if (failure.getDescription().isTest() && failure.getDescription().getMethodName() != null) {
+                    outcomes.add(new Outcome(failure));
+                }
+            }
+        }
+        if (outcomes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<Future<?>> futures = new ArrayList<>();
+        // pool threads are shared by all lanes, each attempt is bound to the lane of its class explicitly
+        final RunnerOutputStream.Lane output = runnerStream.boundLane();
+        for (Outcome outcome : outcomes) {
+            futures.add(pool.submit(() -> {
+                runnerStream.rebind(output);
+                try {
+                    retry(runnable, lane, outcome);
+                } finally {
+                    runnerStream.rebind(null);
+                }
+            }));
+        }
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // the attempt is left as failed
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        for (Outcome outcome : outcomes) {
+            history.record(outcome.test.getDisplayName(), outcome.passed);
+            if (outcome.passed) {
+                flaky.incrementAndGet();
+                dropFailure(recorder.events, outcome.failure);
+            }
+        }
+        return outcomes;
+    }
+
+    private void retry(ParallelSuiteRunner.ParallelRunnable runnable, int lane, Outcome outcome) {
+        while (outcome.attempts < retries && !outcome.passed) {
+            final ParallelRunnerClassLoader loader = parallelSuiteRunner.newClassLoader(lane);
+            final ParallelSuiteRunner.ParallelRunnable attempt = parallelSuiteRunner.rematerialize(runnable, lane, loader, outcome.test);
+            if (attempt == runnable) {
+                // can not be re-created, or the run is stopping
+                return;
+            }
+            outcome.attempts++;
+            final RunNotifierRecorder recorder = new RunNotifierRecorder(runnerStream, null);
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            runnerStream.pin();
+            RuntimeException exception = null;
+            try {
+                attempt.getRunner().run(recorder);
+            } catch (RuntimeException e) {
+                exception = e;
+            } finally {
+                runnerStream.unpin();
+                thread.setContextClassLoader(previous);
+                runnerStream.forget(loader);
+            }
+            boolean finished = false;
+            boolean failed = exception != null;
+            for (RunNotifierRecorder.Event event : recorder.events) {
+                outcome.output.add(RunNotifierRecorder.Event.outputOf(event));
+                if (event.method == RunNotifierRecorder.Method.fireTestFailure) {
+                    failed = true;
+                    outcome.retryFailures.add((Failure) event.parameter);
+                } else if (event.method == RunNotifierRecorder.Method.fireTestAssumptionFailed) {
+                    failed = true;
+                } else if (event.method == RunNotifierRecorder.Method.fireTestFinished && outcome.test.equals(event.parameter)) {
+                    finished = true;
+                }
+            }
+            if (exception != null) {
+                outcome.retryFailures.add(new Failure(outcome.test, exception));
+            }
+            outcome.passed = finished && !failed;
+        }
+    }
+
+    /**
+     * Replaces the failure event with an event carrying its output only.
+     */
+    private static void dropFailure(List<RunNotifierRecorder.Event> events, Failure failure) {
+        for (ListIterator<RunNotifierRecorder.Event> it = events.listIterator(); it.hasNext(); ) {
+            final RunNotifierRecorder.Event event = it.next();
+            if (event.parameter == failure) {
+                it.set(RunNotifierRecorder.Event.outputOf(event));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes outcomes of the retried tests of a class, with output of their attempts.
+     */
+    void report(List<Outcome> outcomes, PrintStream systemOut, PrintStream systemErr) {
+        for (Outcome outcome : outcomes) {
+            if (outcome.passed) {
+                systemOut.format("parallel-runner: flaky test %s failed, passed on retry %d of %d (%d times so far)%n",
+                        outcome.test.getDisplayName(), outcome.attempts, retries, history.passedOnRetry(outcome.test.getDisplayName()));
+            } else {
+                systemOut.format("parallel-runner: test %s failed, %d retries failed too%n", outcome.test.getDisplayName(), outcome.attempts);
+            }
+            for (RunNotifierRecorder.Event event : outcome.output) {
+                RunNotifierRecorder.replayEvent(null, event, systemOut, systemErr);
+            }
+        }
+    }
+
+    /**
+     * Saves the history of retried tests and tells how many were flaky in the run.
+     */
+    void finished(PrintStream out) {
+        final int count = flaky.getAndSet(0);
+        if (count > 0) {
+            out.format("parallel-runner: %d flaky tests passed on retry, history of retried tests is kept in %s%n", count, history.getFile());
+        }
+        history.save();
+    }
+}
@@ -0,0 +1,134 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lane backed by a child JVM, started on the first class and reused for the following ones. Classes are sent to
+ * {@link ForkedLaneMain} over its stdin, events and captured output come back over its stdout as
+ * {@link LaneProtocol} frames. A child which dies in the middle of a class (<code>System.exit</code>, crash in native
+ * code) fails that class and is replaced by a fresh one for the next class.
+ */
+class ForkedLane implements OutOfProcessLane {
+
+    private final int lane;
+    private final String[] jvmArgs;
+
+    private volatile Process process;
+    private DataOutputStream commands;
+    private LaneProtocol.EventReader reader;
+
+    ForkedLane(int lane, String[] jvmArgs) {
+        this.lane = lane;
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * Runs the class of the runner in the child JVM, firing its events into the notifier and writing its output into
+     * <code>System.out</code> of the calling lane thread.
+     */
+    @Override
+    public synchronized void run(Runner runner, RunNotifier notifier) {
+        final Description description = runner.getDescription();
+        final Class<?> testClass = description.getTestClass();
+        if (testClass == null) {
+            notifier.fireTestFailure(new Failure(description,
+                    new IllegalArgumentException("only test class runners can run in a forked lane: " + runner)));
+            return;
+        }
+        try {
+            start();
+            LaneProtocol.writeRun(commands, description);
+            if (!reader.replay(description, notifier, System.out)) {
+                notifier.fireTestFailure(new Failure(description, new IllegalStateException(
+                        String.format("forked lane %d exited with code %d while running %s", lane, exitCode(), testClass.getName()))));
+                destroy();
+            }
+        } catch (IOException e) {
+            notifier.fireTestFailure(new Failure(description, e));
+            destroy();
+        } catch (StoppedByUserException e) {
+            // the run is stopped in the middle of the class, the rest of its events would desync the stream
+            destroy();
+            throw e;
+        }
+    }
+
+    private void start() throws IOException {
+        if (process != null) {
+            return;
+        }
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(Arrays.asList(jvmArgs));
+        command.add("-D" + TimingStore.DIRECTORY_PROPERTY + "=" + TimingStore.directory().getAbsolutePath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ForkedLaneMain.class.getName());
+        process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        commands = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        reader = new LaneProtocol.EventReader(new BufferedInputStream(process.getInputStream(), 64 * 1024));
+    }
+
+    private int exitCode() {
+        try {
+            return process.waitFor(10, TimeUnit.SECONDS) ? process.exitValue() : -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    /**
+     * Kills the forked JVM without waiting for the lane, a class running in it ends as if the JVM exited.
+     */
+    void kill() {
+        final Process running = process;
+        if (running != null) {
+            running.destroyForcibly();
+        }
+    }
+
+    private void destroy() {
+        if (process != null) {
+            process.destroyForcibly();
+            process = null;
+            commands = null;
+            reader = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (process != null) {
+            try {
+                commands.writeByte(LaneProtocol.QUIT);
+                commands.close();
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+            process = null;
+            commands = null;
+            reader = null;
+        }
+    }
+}
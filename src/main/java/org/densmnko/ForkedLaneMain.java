@@ -0,0 +1,84 @@
+package org.densmnko;
+
+import org.junit.internal.builders.AllDefaultPossibilitiesBuilder;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.Failure;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of a forked lane JVM. Reads <code>RUN</code> commands from the input, runs the requested classes and
+ * answers with {@link LaneProtocol} frames, see {@link ForkedLane}.
+ */
+public class ForkedLaneMain {
+
+    public static void main(String[] args) throws IOException {
+        final OutputStream stdout = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024);
+        serve(new BufferedInputStream(System.in), stdout);
+        System.exit(0);
+    }
+
+    /**
+     * Runs classes requested by <code>input</code> until <code>QUIT</code> or the end of the stream.
+     * <code>System.out</code> is redirected into <code>OUTPUT</code> frames for the time of serving.
+     */
+    static void serve(InputStream input, OutputStream output) throws IOException {
+        final DataInputStream in = new DataInputStream(input);
+        final LaneProtocol.EventWriter writer = new LaneProtocol.EventWriter(output);
+        final PrintStream out = new PrintStream(new BufferedOutputStream(writer.outputStream()), false);
+        final PrintStream originalOut = System.out;
+        writer.flushBeforeEvents(out);
+        System.setOut(out);
+        try {
+            while (true) {
+                final byte tag;
+                try {
+                    tag = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (tag == LaneProtocol.QUIT) {
+                    return;
+                } else if (tag != LaneProtocol.RUN) {
+                    throw new IOException("unknown command " + tag);
+                }
+                final String className = in.readUTF();
+                final List<String> tests = LaneProtocol.readTests(in);
+                run(className, tests, writer);
+                out.flush();
+                writer.finished();
+            }
+        } finally {
+            System.setOut(originalOut);
+        }
+    }
+
+    private static void run(String className, List<String> tests, LaneProtocol.EventWriter notifier) {
+        final Description classDescription = Description.createSuiteDescription(className);
+        try {
+            final Runner runner = new AllDefaultPossibilitiesBuilder().safeRunnerForClass(Class.forName(className));
+            if (!tests.isEmpty() && runner instanceof Filterable) {
+                final List<Description> descriptions = new ArrayList<>();
+                tests.forEach(name -> descriptions.add(Description.createSuiteDescription(name)));
+                ((Filterable) runner).filter(new DescriptionFilter(descriptions));
+            }
+            runner.run(notifier);
+        } catch (ClassNotFoundException | LinkageError | NoTestsRemainException e) {
+            notifier.fireTestFailure(new Failure(classDescription, e));
+        }
+    }
+}
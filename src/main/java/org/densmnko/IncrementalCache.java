@@ -0,0 +1,271 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Results of test classes which passed, kept under {@link TimingStore#directory()} with the bytecode closure they ran
+ * against: digests of the test class and of every isolated class its lane class loader had defined by the end of the
+ * class. A class whose closure and tests are unchanged is not run again, its recorded events are replayed instead.
+ * <p>
+ * Only isolated classes are tracked, so code under test should be listed in <code>isolate</code>. File layout:
+ * <pre>
+ * MAGIC, count, testName*, count, (className, digestLength, digest)*, LaneProtocol frames up to FINISHED
+ * </pre>
+ */
+class IncrementalCache {
+
+    private static final int MAGIC = 0x50524932; // PRI2
+
+    private final File directory;
+
+    IncrementalCache() {
+        this.directory = new File(TimingStore.directory(), "incremental");
+    }
+
+    private File file(Class<?> testClass) {
+        return new File(directory, testClass.getName() + ".bin");
+    }
+
+    /**
+     * Fires recorded events of the runner into the notifier, if its closure is unchanged since it last passed.
+     *
+     * @return <code>true</code> if the events were replayed and the runner must not run
+     */
+    boolean replay(Description description, ParallelRunnerClassLoader classLoader, RunNotifier notifier, OutputStream output) {
+        final Class<?> testClass = description.getTestClass();
+        if (testClass == null) {
+            return false;
+        }
+        final File file = file(testClass);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || !LaneProtocol.readTests(in).equals(tests(description))) {
+                return false;
+            }
+            final int count = LaneProtocol.readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                final String className = in.readUTF();
+                final byte[] digest = new byte[LaneProtocol.readVarInt(in)];
+                in.readFully(digest);
+                if (!Arrays.equals(digest, digest(classLoader, className))) {
+                    return false;
+                }
+            }
+            // recorded by a passed run, events are replayed as a whole or not at all
+            final ParallelSuiteRunner.RunNotifierRecorder buffer = new ParallelSuiteRunner.RunNotifierRecorder(new RunnerOutputStream(), System.out);
+            if (!new LaneProtocol.EventReader(in).replay(description, buffer, output)) {
+                return false;
+            }
+            System.out.format("parallel-runner: %s is unchanged since it passed, results are replayed%n", testClass.getName());
+            buffer.replay(notifier);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return notifier which passes events on to <code>notifier</code> and records them for {@link #save(Recording, ParallelRunnerClassLoader, boolean)}
+     */
+    Recording record(Description description, RunNotifier notifier) {
+        return new Recording(description, notifier);
+    }
+
+    /**
+     * Keeps the recording if the class passed, drops the previous one otherwise.
+     */
+    void save(Recording recording, ParallelRunnerClassLoader classLoader, boolean passed) {
+        final Class<?> testClass = recording.description.getTestClass();
+        if (testClass == null) {
+            return;
+        }
+        final File file = file(testClass);
+        try {
+            recording.finished();
+            if (!passed || recording.failed) {
+                Files.deleteIfExists(file.toPath());
+                return;
+            }
+            directory.mkdirs();
+            final File temp = File.createTempFile(testClass.getName(), ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+                out.writeInt(MAGIC);
+                final List<String> tests = tests(recording.description);
+                LaneProtocol.writeVarInt(out, tests.size());
+                for (String test : tests) {
+                    out.writeUTF(test);
+                }
+                final TreeSet<String> closure = new TreeSet<>(classLoader.getDefinedClassNames());
+                closure.add(testClass.getName());
+                final List<String> names = new ArrayList<>();
+                final List<byte[]> digests = new ArrayList<>();
+                for (String className : closure) {
+                    final byte[] digest = digest(classLoader, className);
+                    if (digest != null) {
+                        names.add(className);
+                        digests.add(digest);
+                    }
+                }
+                LaneProtocol.writeVarInt(out, names.size());
+                for (int i = 0; i < names.size(); i++) {
+                    out.writeUTF(names.get(i));
+                    LaneProtocol.writeVarInt(out, digests.get(i).length);
+                    out.write(digests.get(i));
+                }
+                out.write(recording.frames.toByteArray());
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("unable to save results of " + testClass.getName() + ": " + e);
+        }
+    }
+
+    private static List<String> tests(Description description) {
+        final List<Description> tests = new ArrayList<>();
+        DescriptionFilter.collectTests(description, tests);
+        final List<String> names = new ArrayList<>(tests.size());
+        tests.forEach(test -> names.add(test.getDisplayName()));
+        return names;
+    }
+
+    /**
+     * @return digest of class bytes, or <code>null</code> if the class is not on the classpath any more
+     */
+    private static byte[] digest(ParallelRunnerClassLoader classLoader, String className) {
+        return digest(classLoader.getClassBytesCache(), className);
+    }
+
+    /**
+     * @return digest of class bytes, or <code>null</code> if the class is not on the classpath
+     */
+    static byte[] digest(ClassBytesCache cache, String className) {
+        final ClassBytesCache.ClassBytes classBytes = cache.get(className);
+        if (classBytes == null) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(classBytes.bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Passes events on and writes them as {@link LaneProtocol} frames.
+     */
+    static class Recording extends RunNotifier {
+
+        private final Description description;
+        private final RunNotifier notifier;
+        private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        private final LaneProtocol.EventWriter writer = new LaneProtocol.EventWriter(frames);
+        private volatile boolean failed;
+
+        private Recording(Description description, RunNotifier notifier) {
+            this.description = description;
+            this.notifier = notifier;
+        }
+
+        void finished() throws IOException {
+            writer.finished();
+        }
+
+        @Override
+        public void addListener(RunListener listener) {
+            throw new UnsupportedOperationException("notifier.addListener(listener)");
+        }
+
+        @Override
+        public void addFirstListener(RunListener listener) {
+            throw new UnsupportedOperationException("notifier.addFirstListener(listener)");
+        }
+
+        @Override
+        public void removeListener(RunListener listener) {
+            throw new UnsupportedOperationException("notifier.removeListener(listener)");
+        }
+
+        @Override
+        public void fireTestRunStarted(Description description) {
+            notifier.fireTestRunStarted(description);
+            writer.fireTestRunStarted(description);
+        }
+
+        @Override
+        public void fireTestRunFinished(Result result) {
+            notifier.fireTestRunFinished(result);
+            writer.fireTestRunFinished(result);
+        }
+
+        @Override
+        public void fireTestSuiteStarted(Description description) {
+            notifier.fireTestSuiteStarted(description);
+            writer.fireTestSuiteStarted(description);
+        }
+
+        @Override
+        public void fireTestSuiteFinished(Description description) {
+            notifier.fireTestSuiteFinished(description);
+            writer.fireTestSuiteFinished(description);
+        }
+
+        @Override
+        public void fireTestStarted(Description description) {
+            notifier.fireTestStarted(description);
+            writer.fireTestStarted(description);
+        }
+
+        @Override
+        public void fireTestFailure(Failure failure) {
+            failed = true;
+            notifier.fireTestFailure(failure);
+        }
+
+        @Override
+        public void fireTestAssumptionFailed(Failure failure) {
+            notifier.fireTestAssumptionFailed(failure);
+            writer.fireTestAssumptionFailed(failure);
+        }
+
+        @Override
+        public void fireTestIgnored(Description description) {
+            notifier.fireTestIgnored(description);
+            writer.fireTestIgnored(description);
+        }
+
+        @Override
+        public void fireTestFinished(Description description) {
+            notifier.fireTestFinished(description);
+            writer.fireTestFinished(description);
+        }
+
+        @Override
+        public void pleaseStop() {
+            failed = true;
+            notifier.pleaseStop();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.densmnko;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom JFR events of the runner. JFR classes are touched only when available, so the runner still works on JVMs
+ * without <code>jdk.jfr</code>.
+ */
+final class JfrEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private JfrEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    static void classFinished(RunMetrics.ClassMetrics metrics) {
+        if (AVAILABLE) {
+            Events.classFinished(metrics);
+        }
+    }
+
+    static void laneFinished(int lane, long busyNanos, long idleNanos) {
+        if (AVAILABLE) {
+            Events.laneFinished(lane, busyNanos, idleNanos);
+        }
+    }
+
+    static void classDefined(int lane, String className, long nanos) {
+        if (AVAILABLE) {
+            Events.classDefined(lane, className, nanos);
+        }
+    }
+
+    private static final class Events {
+
+        static void classFinished(RunMetrics.ClassMetrics metrics) {
+            final TestClassEvent event = new TestClassEvent();
+            if (event.isEnabled()) {
+                event.lane = metrics.lane;
+                event.testClass = metrics.className;
+                event.queueWait = metrics.queueWaitNanos;
+                event.run = metrics.runNanos;
+                event.replayBlocked = metrics.replayBlockedNanos;
+                event.classesLoaded = metrics.classesLoaded;
+                event.classLoading = metrics.classLoadingNanos;
+                event.outputBytes = metrics.outputBytes;
+                event.commit();
+            }
+        }
+
+        static void laneFinished(int lane, long busyNanos, long idleNanos) {
+            final LaneEvent event = new LaneEvent();
+            if (event.isEnabled()) {
+                event.lane = lane;
+                event.busy = busyNanos;
+                event.idle = idleNanos;
+                event.commit();
+            }
+        }
+
+        static void classDefined(int lane, String className, long nanos) {
+            final ClassDefinedEvent event = new ClassDefinedEvent();
+            if (event.isEnabled()) {
+                event.lane = lane;
+                event.definedClass = className;
+                event.defining = nanos;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("org.densmnko.TestClass")
+    @Label("Test Class")
+    @Category("Parallel Runner")
+    static class TestClassEvent extends Event {
+        @Label("Lane")
+        int lane;
+        @Label("Test Class")
+        String testClass;
+        @Label("Queue Wait")
+        @Timespan
+        long queueWait;
+        @Label("Run")
+        @Timespan
+        long run;
+        @Label("Replay Blocked")
+        @Timespan
+        long replayBlocked;
+        @Label("Classes Loaded")
+        long classesLoaded;
+        @Label("Class Loading")
+        @Timespan
+        long classLoading;
+        @Label("Output Bytes")
+        long outputBytes;
+    }
+
+    @Name("org.densmnko.Lane")
+    @Label("Lane")
+    @Category("Parallel Runner")
+    static class LaneEvent extends Event {
+        @Label("Lane")
+        int lane;
+        @Label("Busy")
+        @Timespan
+        long busy;
+        @Label("Idle")
+        @Timespan
+        long idle;
+    }
+
+    @Name("org.densmnko.ClassDefined")
+    @Label("Isolated Class Defined")
+    @Category("Parallel Runner")
+    static class ClassDefinedEvent extends Event {
+        @Label("Lane")
+        int lane;
+        @Label("Class")
+        String definedClass;
+        @Label("Defining")
+        @Timespan
+        long defining;
+    }
+}
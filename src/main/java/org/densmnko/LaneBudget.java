@@ -0,0 +1,48 @@
+package org.densmnko;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Number of lanes the host can afford for {@link ParallelSuiteRunner.Suites#AUTO}: one per processor, as long as the
+ * heap and metaspace headroom cover the memory cost of every lane.
+ */
+final class LaneBudget {
+
+    private static final long MB = 1024 * 1024;
+
+    private LaneBudget() {
+    }
+
+    /**
+     * @param classes       test classes to run, there is no point in more lanes than that
+     * @param laneMemoryMb  heap and metaspace one lane is expected to take, in megabytes
+     * @param perProcessor  at most one lane per processor, <code>false</code> for lanes which mostly wait
+     */
+    static int lanes(int classes, int laneMemoryMb, boolean perProcessor) {
+        final Runtime runtime = Runtime.getRuntime();
+        final int processors = perProcessor ? runtime.availableProcessors() : Integer.MAX_VALUE;
+        final long laneMemory = Math.max(1, laneMemoryMb) * MB;
+        final long heap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        final long metaspace = metaspaceHeadroom();
+        final long affordable = Math.min(heap, metaspace) / laneMemory;
+        final int lanes = (int) Math.max(1, Math.min(Math.min(processors, affordable), classes));
+        System.out.format("parallel-runner: %d lanes, processors: %d, heap headroom: %d MB, metaspace headroom: %s, lane cost: %d MB%n",
+                lanes, runtime.availableProcessors(), heap / MB, metaspace == Long.MAX_VALUE ? "unlimited" : metaspace / MB + " MB", laneMemory / MB);
+        return lanes;
+    }
+
+    /**
+     * @return free space of the metaspace, {@link Long#MAX_VALUE} if it is not limited
+     */
+    private static long metaspaceHeadroom() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                final MemoryUsage usage = pool.getUsage();
+                return usage.getMax() < 0 ? Long.MAX_VALUE : usage.getMax() - usage.getUsed();
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
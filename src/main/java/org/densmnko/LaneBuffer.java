@@ -0,0 +1,194 @@
+package org.densmnko;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Captured output of a lane: a list of fixed size chunks, moved to a temp file once the lane holds more than
+ * {@link #SPILL_THRESHOLD} bytes in memory. Locked per lane only.
+ */
+class LaneBuffer {
+
+    static final int CHUNK_SIZE = 8 * 1024;
+    static final long SPILL_THRESHOLD = Long.getLong("parallel-runner.spill-threshold", 16 * 1024 * 1024);
+
+    private List<byte[]> chunks = new ArrayList<>();
+    private byte[] current;
+    private int position;
+    private long inMemory;
+    private Spill spill;
+    private boolean spillFailed;
+
+    synchronized void write(int b) {
+        if (current == null || position == current.length) {
+            next();
+        }
+        current[position++] = (byte) b;
+        inMemory++;
+    }
+
+    synchronized void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (current == null || position == current.length) {
+                next();
+            }
+            final int n = Math.min(len, current.length - position);
+            System.arraycopy(b, off, current, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            inMemory += n;
+        }
+    }
+
+    private void next() {
+        if (inMemory >= SPILL_THRESHOLD) {
+            spill();
+        }
+        current = new byte[CHUNK_SIZE];
+        position = 0;
+        chunks.add(current);
+    }
+
+    private void spill() {
+        if (spillFailed) {
+            return;
+        }
+        final boolean created = spill == null;
+        long size = 0;
+        try {
+            if (created) {
+                spill = newSpill();
+            }
+            size = spill.size;
+            final int last = chunks.size() - 1;
+            for (int i = 0; i <= last; i++) {
+                spill.append(chunks.get(i), i == last ? position : CHUNK_SIZE);
+            }
+        } catch (IOException e) {
+            // keep it in memory then, without the chunks appended so far, and do not try again, e.g. on a full disk
+            spillFailed = true;
+            if (spill != null) {
+                if (created) {
+                    spill.release();
+                    spill = null;
+                } else {
+                    spill.truncate(size);
+                }
+            }
+            return;
+        }
+        chunks = new ArrayList<>();
+        current = null;
+        inMemory = 0;
+    }
+
+    /**
+     * @return temp file to spill to, a failing one in tests
+     */
+    Spill newSpill() throws IOException {
+        return new Spill();
+    }
+
+    /**
+     * @return everything written so far, the buffer starts over empty
+     */
+    synchronized CapturedOutput drain() {
+        if (inMemory == 0 && spill == null) {
+            return CapturedOutput.EMPTY;
+        }
+        final CapturedOutput output = new CapturedOutput(spill, chunks, position);
+        chunks = new ArrayList<>();
+        current = null;
+        position = 0;
+        inMemory = 0;
+        spill = null;
+        return output;
+    }
+
+    /**
+     * Append-only temp file, written through its channel and read back through read-only mapped slices of at most
+     * {@link #REGION_SIZE} bytes. The file is deleted once it is read, files never read are deleted on exit.
+     */
+    static class Spill {
+
+        static final int REGION_SIZE = 4 * 1024 * 1024;
+
+        // spill files not released yet, deleted by a single shutdown hook rather than one deleteOnExit entry each
+        private static final Set<File> LIVE = ConcurrentHashMap.newKeySet();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> LIVE.forEach(File::delete), "parallel-runner-spills"));
+        }
+
+        final File file;
+        final FileChannel channel;
+        long size;
+
+        Spill() throws IOException {
+            file = File.createTempFile("parallel-runner-", ".out");
+            LIVE.add(file);
+            channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        void append(byte[] b, int len) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(b, 0, len);
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer, size);
+            }
+        }
+
+        /**
+         * Drops what was appended after the given size; the file is only read up to its size anyway.
+         */
+        void truncate(long size) {
+            this.size = size;
+            try {
+                channel.truncate(size);
+            } catch (IOException e) {
+                // the tail is never read
+            }
+        }
+
+        /**
+         * Calls the reader with the content of the file, in pieces of at most <code>buffer.length</code> bytes.
+         */
+        void read(byte[] buffer, ChunkReader reader) throws IOException {
+            long offset = 0;
+            while (offset < size) {
+                final long length = Math.min(size - offset, REGION_SIZE);
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                while (mapped.hasRemaining()) {
+                    final int n = Math.min(buffer.length, mapped.remaining());
+                    mapped.get(buffer, 0, n);
+                    reader.read(buffer, n);
+                }
+                offset += length;
+            }
+        }
+
+        void release() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                file.delete();
+                LIVE.remove(file);
+            }
+        }
+    }
+
+    interface ChunkReader {
+        void read(byte[] b, int len) throws IOException;
+    }
+}
@@ -0,0 +1,94 @@
+package org.densmnko;
+
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Stands in for a <code>java.util.logging</code> {@link ConsoleHandler} during a run. A console handler keeps the
+ * <code>System.err</code> it was created with and publishes under its own lock, so records of all lanes would bypass
+ * capture and contend on it; this one formats on the logging thread and writes to the lane error buffer.
+ */
+class LaneLogHandler extends Handler {
+
+    private final OutputStream err;
+    private final Charset charset;
+
+    LaneLogHandler(Handler replaced, OutputStream err) {
+        this.err = err;
+        setLevel(replaced.getLevel());
+        setFilter(replaced.getFilter());
+        setFormatter(replaced.getFormatter() != null ? replaced.getFormatter() : new SimpleFormatter());
+        final String encoding = replaced.getEncoding();
+        charset = encoding != null && Charset.isSupported(encoding) ? Charset.forName(encoding) : Charset.defaultCharset();
+        try {
+            setEncoding(charset.name());
+        } catch (UnsupportedEncodingException e) {
+            // checked above
+        }
+    }
+
+    /**
+     * Replaces console handlers of the root logger.
+     *
+     * @return replaced handlers, for {@link #restore(List)}
+     */
+    static List<Handler> install(OutputStream err) {
+        final Logger root = Logger.getLogger("");
+        final List<Handler> replaced = new ArrayList<>();
+        for (Handler handler : root.getHandlers()) {
+            if (handler instanceof ConsoleHandler) {
+                handler.flush();
+                root.removeHandler(handler);
+                root.addHandler(new LaneLogHandler(handler, err));
+                replaced.add(handler);
+            }
+        }
+        return replaced;
+    }
+
+    static void restore(List<Handler> replaced) {
+        final Logger root = Logger.getLogger("");
+        for (Handler handler : root.getHandlers()) {
+            if (handler instanceof LaneLogHandler) {
+                root.removeHandler(handler);
+            }
+        }
+        replaced.forEach(root::addHandler);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        final byte[] bytes;
+        try {
+            bytes = getFormatter().format(record).getBytes(charset);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+        try {
+            err.write(bytes, 0, bytes.length);
+        } catch (Exception e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,75 @@
+package org.densmnko;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Packs a flat list of test classes into lanes with longest-processing-time-first heuristic, using durations of
+ * previous runs. Classes without history are estimated with the mean of known durations. Every lane runs its classes
+ * in the order they were packed.
+ */
+class LanePacker {
+
+    private LanePacker() {
+    }
+
+    static List<List<Class<?>>> pack(List<Class<?>> classes, int lanes, TimingStore timings) {
+        return pack(classes, lanes, timings, null);
+    }
+
+    /**
+     * @param priority order to place classes in before the longest ones, or <code>null</code>; classes placed first
+     *                 land on different lanes, so they all start right away
+     */
+    static List<List<Class<?>>> pack(List<Class<?>> classes, int lanes, TimingStore timings, Comparator<String> priority) {
+        final long[] estimates = new long[classes.size()];
+        long known = 0;
+        int knownCount = 0;
+        for (int i = 0; i < classes.size(); i++) {
+            estimates[i] = timings.duration(classes.get(i).getName());
+            if (estimates[i] >= 0) {
+                known += estimates[i];
+                knownCount++;
+            }
+        }
+        final long unknown = knownCount == 0 ? 1 : Math.max(1, known / knownCount);
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < estimates.length; i++) {
+            if (estimates[i] < 0) {
+                estimates[i] = unknown;
+            }
+            order.add(i);
+        }
+        // stable, so classes of the same duration keep declaration order
+        order.sort(Comparator.comparingLong((Integer i) -> estimates[i]).reversed());
+        if (priority != null) {
+            order.sort(Comparator.comparing((Integer i) -> classes.get(i).getName(), priority));
+        }
+
+        final long[] loads = new long[lanes];
+        final List<List<Integer>> assigned = new ArrayList<>();
+        for (int lane = 0; lane < lanes; lane++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (int i : order) {
+            int lightest = 0;
+            for (int lane = 1; lane < lanes; lane++) {
+                if (loads[lane] < loads[lightest]) {
+                    lightest = lane;
+                }
+            }
+            loads[lightest] += estimates[i];
+            assigned.get(lightest).add(i);
+        }
+
+        final List<List<Class<?>>> result = new ArrayList<>();
+        // lanes keep the packing order, so every lane starts with its longest, or most urgent, class
+        for (List<Integer> lane : assigned) {
+            final List<Class<?>> laneClasses = new ArrayList<>();
+            lane.forEach(i -> laneClasses.add(classes.get(i)));
+            result.add(laneClasses);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package org.densmnko;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide pool of lane threads which outlives a single run. A long-lived process (IDE, build daemon, re-run loop)
+ * gets already started lane threads on the next run instead of new ones. Class loaders are not pooled: every run still
+ * gets fresh {@link ParallelRunnerClassLoader}s, so only the isolated classes are loaded again (their bytes come from
+ * {@link ClassBytesCache}), while the runner, JUnit and everything else loaded by the parent stay warm.
+ */
+public final class LanePool {
+
+    private static final LanePool SHARED = new LanePool();
+
+    private final Deque<ExecutorService> idle = new ArrayDeque<>();
+    private final ThreadFactory threadFactory = new LaneThreadFactory();
+
+    public static LanePool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return single-thread executors, one per lane, exclusively leased until {@link #release(ExecutorService[])}
+     */
+    synchronized ExecutorService[] acquire(int lanes) {
+        final ExecutorService[] executors = new ExecutorService[lanes];
+        for (int i = 0; i < lanes; i++) {
+            ExecutorService executor = idle.pollFirst();
+            while (executor != null && executor.isShutdown()) {
+                executor = idle.pollFirst();
+            }
+            executors[i] = executor != null ? executor : Executors.newSingleThreadExecutor(threadFactory);
+        }
+        return executors;
+    }
+
+    /**
+     * Gives lane threads back to the pool. Context class loader of the threads is reset, so an idle lane does not keep
+     * class loaders of the finished run reachable.
+     */
+    synchronized void release(ExecutorService[] executors) {
+        final ClassLoader classLoader = LanePool.class.getClassLoader();
+        for (ExecutorService executor : executors) {
+            if (!executor.isShutdown()) {
+                executor.submit(() -> Thread.currentThread().setContextClassLoader(classLoader));
+                idle.addLast(executor);
+            }
+        }
+    }
+
+    /**
+     * Stops idle lane threads. The pool stays usable, lanes leased later start new threads.
+     */
+    public synchronized void close() {
+        for (ExecutorService executor : idle) {
+            executor.shutdown();
+        }
+        idle.clear();
+    }
+
+    private static class LaneThreadFactory implements ThreadFactory {
+        final ThreadGroup group = new ThreadGroup("parallel-runner");
+        final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(group, r, String.format("runner-pool-%d", counter.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package org.densmnko;
+
+import org.densmnko.ParallelSuiteRunner.RunNotifierRecorder.Method;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary framing of notifier events and captured output, exchanged with out-of-process lanes.
+ * <p>
+ * Every frame starts with a one byte tag. Descriptions are sent once as <code>DESCRIPTION id displayName</code> and
+ * referred to by their varint id afterwards, so a typical event takes three bytes on the wire.
+ * <pre>
+ * HELLO       token                            (first frame of a remote worker)
+ * RUN         className, count, displayName*   (count == 0 runs the whole class)
+ * QUIT
+ * DESCRIPTION id, displayName
+ * EVENT       method, [id], [throwable]
+ * OUTPUT      length, bytes
+ * FINISHED
+ *
+ * throwable:  className, assertion, [message], count, (declaringClass, methodName, [fileName], line)*, [throwable]
+ * </pre>
+ * Exceptions are sent as plain fields, never as serialized Java objects, and come back as {@link RemoteThrowable}s
+ * which print like the original: a peer can not make the reading side instantiate classes of its choice.
+ */
+final class LaneProtocol {
+
+    static final byte HELLO = 'H';
+    static final byte RUN = 'R';
+    static final byte QUIT = 'Q';
+    static final byte DESCRIPTION = 'D';
+    static final byte EVENT = 'E';
+    static final byte OUTPUT = 'O';
+    static final byte FINISHED = 'F';
+
+    private static final Method[] METHODS = Method.values();
+
+    // causes deeper than that are cut off
+    private static final int MAX_CAUSES = 16;
+    private static final int MAX_STRING = 16 * 1024 * 1024;
+
+    private LaneProtocol() {
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    static void writeRun(DataOutputStream out, String className, Collection<String> tests) throws IOException {
+        out.writeByte(RUN);
+        out.writeUTF(className);
+        writeVarInt(out, tests.size());
+        for (String test : tests) {
+            out.writeUTF(test);
+        }
+        out.flush();
+    }
+
+    /**
+     * Requests a run of the tests of <code>description</code>, a test class or a filtered part of it.
+     */
+    static void writeRun(DataOutputStream out, Description description) throws IOException {
+        final List<Description> tests = new ArrayList<>();
+        DescriptionFilter.collectTests(description, tests);
+        final List<String> names = new ArrayList<>();
+        tests.forEach(d -> names.add(d.getDisplayName()));
+        writeRun(out, description.getTestClass().getName(), names);
+    }
+
+    static List<String> readTests(DataInputStream in) throws IOException {
+        final int count = readVarInt(in);
+        final List<String> tests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tests.add(in.readUTF());
+        }
+        return tests;
+    }
+
+    /**
+     * Notifier which writes every event as a frame. Output written to {@link #outputStream()} goes in between the
+     * events, in the order it was produced.
+     */
+    static class EventWriter extends RunNotifier {
+
+        private final DataOutputStream out;
+        private final Map<Description, Integer> ids = new HashMap<>();
+        private volatile Flushable pending;
+
+        EventWriter(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        /**
+         * @param pending buffered output to be flushed before every event, so events keep their place in the output
+         */
+        void flushBeforeEvents(Flushable pending) {
+            this.pending = pending;
+        }
+
+        OutputStream outputStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    output(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    output(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    EventWriter.this.flush();
+                }
+            };
+        }
+
+        synchronized void output(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                out.writeByte(OUTPUT);
+                writeVarInt(out, len);
+                out.write(b, off, len);
+            }
+        }
+
+        synchronized void finished() throws IOException {
+            out.writeByte(FINISHED);
+            out.flush();
+        }
+
+        synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        void event(Method method, Object parameter) {
+            final Flushable pending = this.pending;
+            if (pending != null) {
+                try {
+                    pending.flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException("unable to flush output", e);
+                }
+            }
+            write(method, parameter);
+        }
+
+        private synchronized void write(Method method, Object parameter) {
+            try {
+                if (parameter instanceof Description) {
+                    final int id = define((Description) parameter);
+                    out.writeByte(EVENT);
+                    out.writeByte(method.ordinal());
+                    writeVarInt(out, id);
+                } else if (parameter instanceof Failure) {
+                    final Failure failure = (Failure) parameter;
+                    final int id = define(failure.getDescription());
+                    out.writeByte(EVENT);
+                    out.writeByte(method.ordinal());
+                    writeVarInt(out, id);
+                    writeThrowable(out, failure.getException(), 0);
+                } else {
+                    out.writeByte(EVENT);
+                    out.writeByte(method.ordinal());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("unable to write " + method, e);
+            }
+        }
+
+        private int define(Description description) throws IOException {
+            Integer id = ids.get(description);
+            if (id == null) {
+                id = ids.size();
+                ids.put(description, id);
+                out.writeByte(DESCRIPTION);
+                writeVarInt(out, id);
+                out.writeUTF(description.getDisplayName());
+            }
+            return id;
+        }
+
+
+        @Override
+        public void addListener(RunListener listener) {
+            throw new UnsupportedOperationException("notifier.addListener(listener)");
+        }
+
+        @Override
+        public void addFirstListener(RunListener listener) {
+            throw new UnsupportedOperationException("notifier.addFirstListener(listener)");
+        }
+
+        @Override
+        public void removeListener(RunListener listener) {
+            throw new UnsupportedOperationException("notifier.removeListener(listener)");
+        }
+
+        @Override
+        public void fireTestRunStarted(Description description) {
+            event(Method.fireTestRunStarted, description);
+        }
+
+        @Override
+        public void fireTestRunFinished(Result result) {
+            event(Method.fireTestRunFinished, result);
+        }
+
+        @Override
+        public void fireTestSuiteStarted(Description description) {
+            event(Method.fireTestSuiteStarted, description);
+        }
+
+        @Override
+        public void fireTestSuiteFinished(Description description) {
+            event(Method.fireTestSuiteFinished, description);
+        }
+
+        @Override
+        public void fireTestStarted(Description description) {
+            event(Method.fireTestStarted, description);
+        }
+
+        @Override
+        public void fireTestFailure(Failure failure) {
+            event(Method.fireTestFailure, failure);
+        }
+
+        @Override
+        public void fireTestAssumptionFailed(Failure failure) {
+            event(Method.fireTestAssumptionFailed, failure);
+        }
+
+        @Override
+        public void fireTestIgnored(Description description) {
+            event(Method.fireTestIgnored, description);
+        }
+
+        @Override
+        public void fireTestFinished(Description description) {
+            event(Method.fireTestFinished, description);
+        }
+
+        @Override
+        public void pleaseStop() {
+            event(Method.pleaseStop, null);
+        }
+    }
+
+    /**
+     * Reads frames written by {@link EventWriter} and fires them into a notifier. Descriptions are resolved by display
+     * name against the description tree of the local runner, exceptions are read as {@link RemoteThrowable}s.
+     */
+    static class EventReader {
+
+        private final DataInputStream in;
+        private final Map<String, Description> known = new HashMap<>();
+        private final List<Description> ids = new ArrayList<>();
+
+        EventReader(InputStream in) {
+            this.in = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+        }
+
+        private void index(Description description) {
+            known.put(description.getDisplayName(), description);
+            description.getChildren().forEach(this::index);
+        }
+
+        /**
+         * Fires events of the runner described by <code>root</code>, up to the <code>FINISHED</code> frame.
+         *
+         * @return <code>false</code> if the stream ended before <code>FINISHED</code>
+         */
+        boolean replay(Description root, RunNotifier notifier, OutputStream output) throws IOException {
+            index(root);
+            while (true) {
+                final int tag;
+                try {
+                    tag = in.readByte();
+                } catch (EOFException e) {
+                    return false;
+                }
+                switch (tag) {
+                    case DESCRIPTION: {
+                        final int id = readVarInt(in);
+                        final String name = in.readUTF();
+                        final Description description = known.get(name);
+                        while (ids.size() <= id) {
+                            ids.add(null);
+                        }
+                        ids.set(id, description != null ? description : Description.createSuiteDescription(name));
+                        break;
+                    }
+                    case OUTPUT: {
+                        final byte[] bytes = new byte[readVarInt(in)];
+                        in.readFully(bytes);
+                        output.write(bytes);
+                        break;
+                    }
+                    case EVENT:
+                        readEvent(notifier);
+                        break;
+                    case FINISHED:
+                        output.flush();
+                        return true;
+                    default:
+                        throw new IOException("unknown frame " + tag);
+                }
+            }
+        }
+
+        private void readEvent(RunNotifier notifier) throws IOException {
+            final int ordinal = in.readUnsignedByte();
+            if (ordinal >= METHODS.length) {
+                throw new IOException("unknown event " + ordinal);
+            }
+            final Method method = METHODS[ordinal];
+            final Object parameter;
+            switch (method) {
+                case fireTestRunFinished:
+                    // results are counted by the notifier of the run, not taken from a peer
+                    parameter = new Result();
+                    break;
+                case fireTestFailure:
+                case fireTestAssumptionFailed: {
+                    final Description description = description(readVarInt(in));
+                    parameter = new Failure(description, readThrowable(in, 0));
+                    break;
+                }
+                case pleaseStop:
+                    parameter = null;
+                    break;
+                default:
+                    parameter = description(readVarInt(in));
+            }
+            ParallelSuiteRunner.RunNotifierRecorder.fire(notifier, method, parameter);
+        }
+
+        private Description description(int id) throws IOException {
+            if (id >= ids.size() || ids.get(id) == null) {
+                throw new IOException("undefined description " + id);
+            }
+            return ids.get(id);
+        }
+    }
+
+    static void writeThrowable(DataOutputStream out, Throwable throwable, int depth) throws IOException {
+        writeString(out, className(throwable));
+        out.writeBoolean(throwable instanceof AssertionError);
+        writeNullable(out, throwable.getMessage());
+        final StackTraceElement[] frames = throwable.getStackTrace();
+        writeVarInt(out, frames.length);
+        for (StackTraceElement frame : frames) {
+            writeString(out, frame.getClassName());
+            writeString(out, frame.getMethodName());
+            writeNullable(out, frame.getFileName());
+            out.writeInt(frame.getLineNumber());
+        }
+        final Throwable cause = throwable.getCause();
+        final boolean hasCause = cause != null && cause != throwable && depth < MAX_CAUSES;
+        out.writeBoolean(hasCause);
+        if (hasCause) {
+            writeThrowable(out, cause, depth + 1);
+        }
+    }
+
+    static Throwable readThrowable(DataInputStream in, int depth) throws IOException {
+        if (depth > MAX_CAUSES) {
+            throw new IOException("too many causes");
+        }
+        final String className = readString(in);
+        final boolean assertion = in.readBoolean();
+        final String message = readNullable(in);
+        final Throwable throwable = assertion ? new RemoteAssertionError(className, message) : new RemoteException(className, message);
+        final StackTraceElement[] frames = new StackTraceElement[readVarInt(in)];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new StackTraceElement(readString(in), readString(in), readNullable(in), in.readInt());
+        }
+        throwable.setStackTrace(frames);
+        if (in.readBoolean()) {
+            throwable.initCause(readThrowable(in, depth + 1));
+        }
+        return throwable;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = readVarInt(in);
+        if (length < 0 || length > MAX_STRING) {
+            throw new IOException("string of " + length + " bytes");
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            writeString(out, s);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    /**
+     * @return class name of the exception, the original one for an exception which came from a peer
+     */
+    static String className(Throwable throwable) {
+        return throwable instanceof RemoteThrowable ? ((RemoteThrowable) throwable).getRemoteClassName() : throwable.getClass().getName();
+    }
+
+    /**
+     * Exception which came from a peer, standing in for an instance of {@link #getRemoteClassName()}.
+     */
+    interface RemoteThrowable {
+        String getRemoteClassName();
+    }
+
+    static class RemoteException extends RuntimeException implements RemoteThrowable {
+        private static final long serialVersionUID = 1L;
+
+        private final String className;
+
+        RemoteException(String className, String message) {
+            super(message);
+            this.className = className;
+        }
+
+        @Override
+        public String getRemoteClassName() {
+            return className;
+        }
+
+        @Override
+        public String toString() {
+            return getMessage() == null ? className : className + ": " + getMessage();
+        }
+    }
+
+    /**
+     * Stands in for an {@link AssertionError} of a peer, so it still counts as a test failure rather than an error.
+     */
+    static class RemoteAssertionError extends AssertionError implements RemoteThrowable {
+        private static final long serialVersionUID = 1L;
+
+        private final String className;
+
+        RemoteAssertionError(String className, String message) {
+            super(message);
+            this.className = className;
+        }
+
+        @Override
+        public String getRemoteClassName() {
+            return className;
+        }
+
+        @Override
+        public String toString() {
+            return getMessage() == null ? className : className + ": " + getMessage();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.densmnko;
+
+import java.io.PrintStream;
+
+/**
+ * Runs the classes of every lane in fresh class loaders, replaced after a number of classes or once the bytecode
+ * a loader has defined passes a threshold. Replaced loaders are handed to the {@link LeakDetector}, if there is one.
+ */
+class LaneRecycler {
+
+    private static final long MB = 1024 * 1024;
+
+    private final ParallelSuiteRunner parallelSuiteRunner;
+    private final int after;
+    private final long memory;
+    private final RunnerOutputStream runnerStream;
+    private final LeakDetector leakDetector;
+
+    // current loader of every lane, guarded by this
+    private final ParallelRunnerClassLoader[] current;
+    private final int[] classes;
+    private final String[] lastClass;
+    private int recycled;
+
+    /**
+     * @param after  classes a loader runs before it is replaced, 0 for no limit
+     * @param memory megabytes of bytecode a loader defines before it is replaced, 0 for no limit
+     * @param leakDetector reports retired loaders still reachable, <code>null</code> for none
+     */
+    LaneRecycler(ParallelSuiteRunner parallelSuiteRunner, int lanes, int after, int memory, RunnerOutputStream runnerStream,
+                 LeakDetector leakDetector) {
+        this.parallelSuiteRunner = parallelSuiteRunner;
+        this.leakDetector = leakDetector;
+        this.after = after;
+        this.memory = memory * MB;
+        this.runnerStream = runnerStream;
+        current = new ParallelRunnerClassLoader[lanes];
+        classes = new int[lanes];
+        lastClass = new String[lanes];
+    }
+
+    /**
+     * @return the runnable re-materialized in the current class loader of the lane, a fresh one if it is due
+     */
+    ParallelSuiteRunner.ParallelRunnable next(ParallelSuiteRunner.ParallelRunnable runnable, int lane) {
+        final ParallelRunnerClassLoader loader;
+        synchronized (this) {
+            if (current[lane] == null || isDue(lane)) {
+                retire(lane);
+                current[lane] = parallelSuiteRunner.newClassLoader(lane);
+            }
+            loader = current[lane];
+            classes[lane]++;
+            lastClass[lane] = runnable.getRunner().getDescription().getDisplayName();
+        }
+        final ParallelSuiteRunner.ParallelRunnable rematerialized = parallelSuiteRunner.rematerialize(runnable, lane, loader);
+        if (leakDetector != null && rematerialized != runnable) {
+            leakDetector.ran(loader, rematerialized.getRunner().getDescription());
+        }
+        return rematerialized;
+    }
+
+    private boolean isDue(int lane) {
+        return after > 0 && classes[lane] >= after || memory > 0 && current[lane].getDefinedBytes() >= memory;
+    }
+
+    private void retire(int lane) {
+        final ParallelRunnerClassLoader loader = current[lane];
+        if (loader != null) {
+            current[lane] = null;
+            classes[lane] = 0;
+            recycled++;
+            runnerStream.forget(loader);
+            if (leakDetector != null) {
+                leakDetector.retired(loader, lastClass[lane]);
+            }
+        }
+    }
+
+    /**
+     * Retires loaders of the run and reports those still reachable.
+     */
+    void finished(PrintStream out) {
+        final int retired;
+        synchronized (this) {
+            for (int lane = 0; lane < current.length; lane++) {
+                retire(lane);
+            }
+            retired = recycled;
+            recycled = 0;
+        }
+        out.format("parallel-runner: %d lane class loaders recycled%n", retired);
+        if (leakDetector != null) {
+            leakDetector.report(out);
+        }
+    }
+}
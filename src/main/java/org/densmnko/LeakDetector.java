@@ -0,0 +1,160 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps an eye on retired class loaders and reports the ones which are still reachable after a garbage collection and
+ * whose root is found: live threads which run classes of the loader or have it as context class loader, JDBC
+ * drivers and shutdown hooks registered from it, descriptions of its test classes kept by listeners of the run.
+ * Loaders held by other roots, e.g. a static field of a shared class, are left to a heap dump.
+ */
+class LeakDetector {
+
+    private static final int COLLECTIONS = 3;
+
+    private final List<Retired> retired = new ArrayList<>();
+    // descriptions of the classes run in a loader, until it is retired; guarded by this
+    private final Map<ParallelRunnerClassLoader, List<WeakReference<Description>>> descriptions = new WeakHashMap<>();
+
+    private static class Retired extends WeakReference<ParallelRunnerClassLoader> {
+        final int lane;
+        final String lastClass;
+        final List<WeakReference<Description>> descriptions;
+
+        Retired(ParallelRunnerClassLoader loader, String lastClass, List<WeakReference<Description>> descriptions) {
+            super(loader);
+            this.lane = loader.getLane();
+            this.lastClass = lastClass;
+            this.descriptions = descriptions;
+        }
+    }
+
+    /**
+     * Notes a class run in the loader: descriptions of its tests, which listeners get, hold the test class.
+     */
+    synchronized void ran(ParallelRunnerClassLoader loader, Description description) {
+        tests(description, descriptions.computeIfAbsent(loader, l -> new ArrayList<>()));
+    }
+
+    private static void tests(Description description, List<WeakReference<Description>> tests) {
+        if (description.isTest()) {
+            tests.add(new WeakReference<>(description));
+        }
+        for (Description child : description.getChildren()) {
+            tests(child, tests);
+        }
+    }
+
+    synchronized void retired(ParallelRunnerClassLoader loader, String lastClass) {
+        final List<WeakReference<Description>> ran = descriptions.remove(loader);
+        retired.add(new Retired(loader, lastClass, ran != null ? ran : Collections.emptyList()));
+    }
+
+    /**
+     * Reports loaders retired so far which survive a few collections, and forgets them all.
+     */
+    void report(PrintStream out) {
+        final List<Retired> suspects;
+        synchronized (this) {
+            suspects = new ArrayList<>(retired);
+            retired.clear();
+        }
+        for (int i = 0; i < COLLECTIONS && survive(suspects); i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Retired suspect : suspects) {
+            final ParallelRunnerClassLoader loader = suspect.get();
+            if (loader != null) {
+                final List<String> roots = roots(loader);
+                for (WeakReference<Description> reference : suspect.descriptions) {
+                    final Description description = reference.get();
+                    if (description != null) {
+                        roots.add(String.format("description of %s kept by a listener of the run", description.getDisplayName()));
+                        break;
+                    }
+                }
+                if (!roots.isEmpty()) {
+                    out.format("parallel-runner: class loader of lane %d retired after %s is still reachable from %s%n",
+                            suspect.lane, suspect.lastClass, String.join(", ", roots));
+                }
+            }
+        }
+    }
+
+    private static boolean survive(List<Retired> suspects) {
+        for (Iterator<Retired> it = suspects.iterator(); it.hasNext(); ) {
+            if (it.next().get() == null) {
+                it.remove();
+            }
+        }
+        return !suspects.isEmpty();
+    }
+
+    private static List<String> roots(ClassLoader loader) {
+        final List<String> roots = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getClass().getClassLoader() == loader) {
+                roots.add(String.format("thread '%s' of class %s", thread.getName(), thread.getClass().getName()));
+            } else if (thread.getContextClassLoader() == loader) {
+                roots.add(String.format("thread '%s' (context class loader)", thread.getName()));
+            }
+        }
+        for (Object driver : registered("java.sql.DriverManager", "registeredDrivers")) {
+            final Object instance = field(driver, "driver");
+            if (instance != null && instance.getClass().getClassLoader() == loader) {
+                roots.add(String.format("JDBC driver %s, not deregistered", instance.getClass().getName()));
+            }
+        }
+        for (Object hook : registered("java.lang.ApplicationShutdownHooks", "hooks")) {
+            final Thread thread = (Thread) hook;
+            if (thread.getClass().getClassLoader() == loader || thread.getContextClassLoader() == loader) {
+                roots.add(String.format("shutdown hook '%s'", thread.getName()));
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @return elements of a static registry of the JDK, or nothing if it can not be read (e.g. strong encapsulation)
+     */
+    private static Collection<?> registered(String className, String fieldName) {
+        try {
+            final Field field = Class.forName(className).getDeclaredField(fieldName);
+            field.setAccessible(true);
+            final Object value = field.get(null);
+            if (value instanceof Map) {
+                return new ArrayList<>(((Map<?, ?>) value).keySet());
+            }
+            return value instanceof Collection ? new ArrayList<>((Collection<?>) value) : new ArrayList<>();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private static Object field(Object object, String name) {
+        try {
+            final Field field = object.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(object);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
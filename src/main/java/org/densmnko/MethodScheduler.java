@@ -0,0 +1,101 @@
+package org.densmnko;
+
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs test methods of a class on a bounded per-lane pool. Every method gets its own output buffer, so output is still
+ * attributed to the test which produced it.
+ */
+class MethodScheduler implements RunnerScheduler {
+
+    private final ExecutorService pool;
+    private final RunnerOutputStream runnerStream;
+    private final FailFast failFast;
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    MethodScheduler(ExecutorService pool, RunnerOutputStream runnerStream, FailFast failFast) {
+        this.pool = pool;
+        this.runnerStream = runnerStream;
+        this.failFast = failFast;
+    }
+
+    /**
+     * Pool of daemon threads which go away when the lane has no methods to run for a while.
+     */
+    static ExecutorService newPool(int lane, int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread thread = new Thread(r, String.format("runner-%d-method-%d", lane, counter.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    @Override
+    public void schedule(Runnable childStatement) {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        final RunnerOutputStream.Lane lane = runnerStream.boundLane();
+        futures.add(pool.submit(() -> {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            // pool threads outlive the class they were started for, leftovers go to the class scheduling the method
+            runnerStream.rebind(lane);
+            runnerStream.pin();
+            // a stopped run interrupts the method, methods not started yet are skipped with the rest of the class
+            failFast.enter();
+            try {
+                if (!failFast.isStopped()) {
+                    childStatement.run();
+                }
+            } finally {
+                failFast.exit();
+                runnerStream.unpin();
+                runnerStream.rebind(null);
+                thread.setContextClassLoader(previous);
+            }
+        }));
+    }
+
+    @Override
+    public void finished() {
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new IllegalStateException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        futures.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits test classes listed in {@link ParallelSuiteRunner.Suites#shard()} into method shards: the class is listed in
+ * several lanes, the runner of every lane is filtered down to every n-th of its tests. Shards are merged back under
+ * the class description, in the description tree and in the events.
+ */
+class MethodShards {
+
+    private final Set<String> classNames = new HashSet<>();
+    private final int shards;
+    // shards of every sharded class, read by lanes while the run goes on
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<String, Integer> assigned = new HashMap<>();
+    // declaration order of the tests of a class, to merge shards back in
+    private final Map<String, Map<String, Integer>> order = new HashMap<>();
+    // shards finished and their summed duration in millis, by class
+    private final Map<String, long[]> durations = new HashMap<>();
+
+    /**
+     * @param shards shards of every class
+     */
+    MethodShards(Class<?>[] classes, int shards) {
+        for (Class<?> aClass : classes) {
+            classNames.add(aClass.getName());
+        }
+        this.shards = shards;
+    }
+
+    boolean isEmpty() {
+        return classNames.isEmpty() || shards < 2;
+    }
+
+    boolean isSharded(Class<?> aClass) {
+        return !isEmpty() && classNames.contains(aClass.getName());
+    }
+
+    boolean isShard(Runner runner) {
+        return counts.containsKey(runner.getDescription().getDisplayName());
+    }
+
+    /**
+     * Sums durations of the shards of a class, which together take as long as the class would on a lane of its own.
+     *
+     * @return duration of the class once its last shard finished, <code>-1</code> before that
+     */
+    synchronized long finished(String className, long millis) {
+        final long[] finished = durations.computeIfAbsent(className, name -> new long[2]);
+        finished[1] += millis;
+        if (++finished[0] < counts.getOrDefault(className, 1)) {
+            return -1;
+        }
+        durations.remove(className);
+        return finished[1];
+    }
+
+    /**
+     * Filters the runner of the next shard of its class, runners of other classes are returned as they are.
+     * Shards are handed out in the order lanes are set up, so every lane gets a different one.
+     *
+     * @return filtered runner, or <code>null</code> if the class has fewer tests than shards and this one is empty
+     */
+    synchronized Runner apply(Runner runner) {
+        final Description description = runner.getDescription();
+        final Class<?> testClass = description.getTestClass();
+        if (testClass == null || !isSharded(testClass)) {
+            return runner;
+        }
+        final List<Description> tests = new ArrayList<>();
+        DescriptionFilter.collectTests(description, tests);
+        final String name = description.getDisplayName();
+        final int shard = assigned.merge(name, 1, Integer::sum) - 1;
+        final int count = runner instanceof Filterable ? Math.min(shards, tests.size()) : 1;
+        counts.put(name, count);
+        if (shard == 0) {
+            final Map<String, Integer> positions = new HashMap<>();
+            tests.forEach(test -> positions.put(test.getDisplayName(), positions.size()));
+            order.put(name, positions);
+        }
+        if (shard >= count) {
+            return null;
+        }
+        if (count == 1) {
+            return runner;
+        }
+        final List<Description> shardTests = new ArrayList<>();
+        for (int i = shard; i < tests.size(); i += count) {
+            shardTests.add(tests.get(i));
+        }
+        try {
+            ((Filterable) runner).filter(new DescriptionFilter(shardTests));
+        } catch (NoTestsRemainException e) {
+            return null;
+        }
+        return runner;
+    }
+
+    /**
+     * @return description with the shards of every class merged into one child
+     */
+    synchronized Description merge(Description suite) {
+        if (counts.isEmpty()) {
+            return suite;
+        }
+        final Description merged = suite.childlessCopy();
+        final Map<String, List<Description>> classes = new LinkedHashMap<>();
+        final Map<String, Description> copies = new HashMap<>();
+        for (Description child : suite.getChildren()) {
+            final String name = child.getDisplayName();
+            if (!counts.containsKey(name)) {
+                merged.addChild(child);
+                continue;
+            }
+            if (!copies.containsKey(name)) {
+                copies.put(name, child.childlessCopy());
+                classes.put(name, new ArrayList<>());
+                merged.addChild(copies.get(name));
+            }
+            classes.get(name).addAll(child.getChildren());
+        }
+        classes.forEach((name, tests) -> {
+            final Map<String, Integer> positions = order.getOrDefault(name, Collections.emptyMap());
+            tests.sort(Comparator.comparingInt(test -> positions.getOrDefault(test.getDisplayName(), Integer.MAX_VALUE)));
+            tests.forEach(copies.get(name)::addChild);
+        });
+        return merged;
+    }
+
+    /**
+     * @return notifier which reports a sharded class as started with its first shard and finished with its last one
+     */
+    RunNotifier merging(RunNotifier notifier) {
+        return counts.isEmpty() ? notifier : new MergingNotifier(notifier, counts);
+    }
+
+    private static class MergingNotifier extends RunNotifier {
+
+        private final RunNotifier notifier;
+        private final Map<String, Integer> counts;
+        // shards started and finished so far, guarded by this
+        private final Map<String, Integer> started = new HashMap<>();
+        private final Map<String, Integer> finished = new HashMap<>();
+
+        MergingNotifier(RunNotifier notifier, Map<String, Integer> counts) {
+            this.notifier = notifier;
+            this.counts = counts;
+        }
+
+        private synchronized boolean first(Description description) {
+            return !counts.containsKey(description.getDisplayName())
+                    || started.merge(description.getDisplayName(), 1, Integer::sum) == 1;
+        }
+
+        private synchronized boolean last(Description description) {
+            final Integer count = counts.get(description.getDisplayName());
+            return count == null || finished.merge(description.getDisplayName(), 1, Integer::sum).equals(count);
+        }
+
+        @Override
+        public void addListener(RunListener listener) {
+            notifier.addListener(listener);
+        }
+
+        @Override
+        public void addFirstListener(RunListener listener) {
+            notifier.addFirstListener(listener);
+        }
+
+        @Override
+        public void removeListener(RunListener listener) {
+            notifier.removeListener(listener);
+        }
+
+        @Override
+        public void fireTestRunStarted(Description description) {
+            notifier.fireTestRunStarted(description);
+        }
+
+        @Override
+        public void fireTestRunFinished(Result result) {
+            notifier.fireTestRunFinished(result);
+        }
+
+        @Override
+        public void fireTestSuiteStarted(Description description) {
+            if (first(description)) {
+                notifier.fireTestSuiteStarted(description);
+            }
+        }
+
+        @Override
+        public void fireTestSuiteFinished(Description description) {
+            if (last(description)) {
+                notifier.fireTestSuiteFinished(description);
+            }
+        }
+
+        @Override
+        public void fireTestStarted(Description description) {
+            notifier.fireTestStarted(description);
+        }
+
+        @Override
+        public void fireTestFailure(Failure failure) {
+            notifier.fireTestFailure(failure);
+        }
+
+        @Override
+        public void fireTestAssumptionFailed(Failure failure) {
+            notifier.fireTestAssumptionFailed(failure);
+        }
+
+        @Override
+        public void fireTestIgnored(Description description) {
+            notifier.fireTestIgnored(description);
+        }
+
+        @Override
+        public void fireTestFinished(Description description) {
+            notifier.fireTestFinished(description);
+        }
+
+        @Override
+        public void pleaseStop() {
+            notifier.pleaseStop();
+        }
+    }
+
+    /**
+     * Lists every sharded class in as many lanes as it has shards, the lightest ones by known durations. Every shard
+     * is expected to take its share of the duration of the class. A class the suite lists more than once is first
+     * kept in its first lane only, {@link #apply(Runner)} expects exactly one listing per shard.
+     */
+    void spread(List<List<Class<?>>> lanes, TimingStore timings) {
+        if (isEmpty()) {
+            return;
+        }
+        final Set<Class<?>> listed = new HashSet<>();
+        for (List<Class<?>> classes : lanes) {
+            classes.removeIf(aClass -> isSharded(aClass) && !listed.add(aClass));
+        }
+        final long[] loads = new long[lanes.size()];
+        for (int lane = 0; lane < loads.length; lane++) {
+            for (Class<?> aClass : lanes.get(lane)) {
+                loads[lane] += Math.max(1, timings.duration(aClass.getName()));
+            }
+        }
+        for (int lane = 0; lane < loads.length; lane++) {
+            for (Class<?> aClass : new ArrayList<>(lanes.get(lane))) {
+                if (listed.remove(aClass)) {
+                    spread(lanes, aClass, lane, loads, timings);
+                }
+            }
+        }
+    }
+
+    private void spread(List<List<Class<?>>> lanes, Class<?> aClass, int home, long[] loads, TimingStore timings) {
+        final long duration = Math.max(1, timings.duration(aClass.getName()));
+        final int count = Math.min(shards, lanes.size());
+        final long share = Math.max(1, duration / count);
+        loads[home] -= duration - share;
+        final Set<Integer> taken = new HashSet<>();
+        taken.add(home);
+        for (int shard = 1; shard < count; shard++) {
+            int lightest = -1;
+            for (int lane = 0; lane < loads.length; lane++) {
+                if (!taken.contains(lane) && (lightest < 0 || loads[lane] < loads[lightest])) {
+                    lightest = lane;
+                }
+            }
+            taken.add(lightest);
+            loads[lightest] += share;
+            lanes.get(lightest).add(aClass);
+        }
+    }
+}
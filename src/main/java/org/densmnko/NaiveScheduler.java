@@ -2,40 +2,97 @@ package org.densmnko;
 
 import org.junit.runners.model.RunnerScheduler;
 
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Runs every runner in its own lane: one thread and one queue per <code>@Suite.SuiteClasses</code> group.
+ * Lanes start draining their queues once all children are scheduled.
+ */
 public class NaiveScheduler implements RunnerScheduler {
 
-    private final ExecutorService[] pools;
-    private final ParallelSuiteRunner parallelSuiteRunner;
-    private final AtomicInteger counter2 = new AtomicInteger(0);
+    private final int length;
+    private final LanePool lanePool;
+    private ExecutorService[] pools;
+    protected final Deque<ParallelSuiteRunner.ParallelRunnable>[] queues;
+    protected final ParallelSuiteRunner parallelSuiteRunner;
 
     private final Phaser counter = new Phaser();
-    private final NaiveThreadFactory threadFactory;
+    private final ThreadFactory threadFactory;
+
+    // what every lane is running now, guarded by this
+    private final ParallelSuiteRunner.ParallelRunnable[] running;
+    private final Thread[] runningThreads;
+    private final long[] runningSince;
+    private final int[] generations;
+    private final boolean[] retired;
+    private Watchdog watchdog;
+
+    // resources locked by running classes, guarded by this; only used if some class declares a ResourceLock
+    private final ResourceClaims.Table locks = new ResourceClaims.Table();
+    private volatile boolean locking;
 
 
     public NaiveScheduler(int length, ParallelSuiteRunner parallelSuiteRunner) {
-        pools = new ExecutorService[length];
+        this(length, parallelSuiteRunner, null);
+    }
+
+    public NaiveScheduler(int length, ParallelSuiteRunner parallelSuiteRunner, LanePool lanePool) {
+        this(length, parallelSuiteRunner, lanePool, null);
+    }
+
+    /**
+     * @param lanePool      pool to lease lane threads from, or <code>null</code> to start own threads
+     * @param threadFactory factory of own lane threads, e.g. virtual threads, or <code>null</code> for the default one
+     */
+    public NaiveScheduler(int length, ParallelSuiteRunner parallelSuiteRunner, LanePool lanePool, ThreadFactory threadFactory) {
+        this.length = length;
+        this.lanePool = lanePool;
+        queues = newQueues(length);
         this.parallelSuiteRunner = parallelSuiteRunner;
-        threadFactory = new NaiveThreadFactory();
+        this.threadFactory = threadFactory != null ? threadFactory : new NaiveThreadFactory();
         for (int i = 0; i < length; i++) {
-            pools[i] = Executors.newSingleThreadExecutor(threadFactory);
+            queues[i] = new ConcurrentLinkedDeque<>();
         }
+        running = new ParallelSuiteRunner.ParallelRunnable[length];
+        runningThreads = new Thread[length];
+        runningSince = new long[length];
+        generations = new int[length];
+        retired = new boolean[length];
+    }
+
+    /**
+     * @param watchdog watches lanes while {@link #finished()} waits for them, or <code>null</code>
+     */
+    public void setWatchdog(Watchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Deque<ParallelSuiteRunner.ParallelRunnable>[] newQueues(int length) {
+        return new Deque[length];
     }
 
     @Override
     public void schedule(final Runnable runner) {
         if (runner instanceof ParallelSuiteRunner.ParallelRunnable) {
-            int lane = parallelSuiteRunner.laneOf(((ParallelSuiteRunner.ParallelRunnable) runner).getRunner());
+            final ParallelSuiteRunner.ParallelRunnable runnable = (ParallelSuiteRunner.ParallelRunnable) runner;
+            int lane = parallelSuiteRunner.laneOf(runnable);
+            if (!runnable.getClaims().isEmpty()) {
+                locking = true;
+            }
             counter.register();
-            pools[lane].submit(() -> {
-                runner.run();
-                counter.arrive();
-            });
+            queues[lane].addLast(runnable);
         } else {
             throw new IllegalArgumentException("unknown runner " + runner);
         }
@@ -43,7 +100,326 @@ public class NaiveScheduler implements RunnerScheduler {
 
     @Override
     public void finished() {
-        counter.awaitAdvance(0);
+        final ExecutorService[] pools = pools();
+        synchronized (this) {
+            for (int i = 0; i < pools.length; i++) {
+                final int lane = i;
+                final int generation = generations[lane];
+                retired[lane] = false;
+                pools[lane].submit(() -> drain(lane, generation));
+            }
+        }
+        if (watchdog != null) {
+            watchdog.start(this, length);
+        }
+        try {
+            counter.awaitAdvance(0);
+        } finally {
+            if (watchdog != null) {
+                watchdog.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs a task on the lane thread, with the lane class loader as context class loader.
+     */
+    public <T> Future<T> submit(int lane, Callable<T> task) {
+        return pools()[lane].submit(() -> {
+            Thread.currentThread().setContextClassLoader(parallelSuiteRunner.classLoaders.get(lane));
+            return task.call();
+        });
+    }
+
+    /**
+     * Stops lane threads, or gives them back to the {@link LanePool}. Lanes are started again if the scheduler is
+     * used after that.
+     */
+    public synchronized void shutdown() {
+        if (pools == null) {
+            return;
+        }
+        if (lanePool != null) {
+            lanePool.release(pools);
+        } else {
+            for (ExecutorService pool : pools) {
+                pool.shutdownNow();
+            }
+        }
+        pools = null;
+    }
+
+    private synchronized ExecutorService[] pools() {
+        if (pools == null) {
+            if (lanePool != null) {
+                pools = lanePool.acquire(length);
+            } else {
+                pools = new ExecutorService[length];
+                for (int i = 0; i < length; i++) {
+                    pools[i] = Executors.newSingleThreadExecutor(threadFactory);
+                }
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * @return <code>true</code> if the lane is running a class or has classes queued
+     */
+    synchronized boolean isBusy(int lane) {
+        return !retired[lane] && (running[lane] != null || !queues[lane].isEmpty());
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the lane started its current class, 0 if it is not running one
+     */
+    synchronized long runningSince(int lane) {
+        return running[lane] == null ? 0 : runningSince[lane];
+    }
+
+    /**
+     * @return thread running the current class of the lane, <code>null</code> if it is not running one
+     */
+    synchronized Thread runningThread(int lane) {
+        return running[lane] == null ? null : runningThreads[lane];
+    }
+
+    /**
+     * Gives up on the class a lane is stuck in: the class is reported as failed and the stuck thread is interrupted
+     * and left behind. A recycled lane goes on with its queue on a new thread, a retired lane hands its queue over
+     * to the other lanes.
+     * <p>
+     * Classes are reported outside of the scheduler monitor: a stuck thread may be replaying into a listener which
+     * holds the runner monitor, the other lanes still go on meanwhile.
+     */
+    void expire(int lane, boolean retire, Throwable failure) {
+        final ParallelSuiteRunner.ParallelRunnable abandoned;
+        final List<ParallelSuiteRunner.ParallelRunnable> notRun = new ArrayList<>();
+        synchronized (this) {
+            final ParallelSuiteRunner.ParallelRunnable stuck = running[lane];
+            abandoned = stuck != null && stuck.abandon() ? stuck : null;
+            if (stuck != null) {
+                running[lane] = null;
+                if (abandoned != null) {
+                    // the stuck thread may never give its locks back
+                    release(abandoned);
+                    failure.setStackTrace(runningThreads[lane].getStackTrace());
+                }
+            }
+            generations[lane]++;
+            if (stuck != null) {
+                pools[lane].shutdownNow();
+                pools[lane] = lanePool != null ? lanePool.acquire(1)[0] : Executors.newSingleThreadExecutor(threadFactory);
+            }
+            if (retire) {
+                retired[lane] = true;
+                ParallelSuiteRunner.ParallelRunnable queued;
+                while ((queued = queues[lane].pollFirst()) != null) {
+                    if (!handOver(queued)) {
+                        notRun.add(queued);
+                    }
+                }
+            } else {
+                final int generation = generations[lane];
+                pools[lane].submit(() -> drain(lane, generation));
+            }
+        }
+        if (abandoned != null) {
+            parallelSuiteRunner.timedOut(abandoned, lane, failure);
+            counter.arrive();
+        }
+        for (ParallelSuiteRunner.ParallelRunnable runnable : notRun) {
+            notRun(lane, runnable);
+        }
+    }
+
+    private void requeue(int lane, ParallelSuiteRunner.ParallelRunnable runnable) {
+        synchronized (this) {
+            if (!retired[lane]) {
+                queues[lane].addFirst(runnable);
+                return;
+            }
+            if (handOver(runnable)) {
+                return;
+            }
+        }
+        notRun(lane, runnable);
+    }
+
+    /**
+     * Moves a class of a retired lane to the healthiest lane, caller holds the monitor.
+     *
+     * @return <code>false</code> if all lanes are retired, the class is abandoned then and has to be reported with
+     * {@link #notRun(int, ParallelSuiteRunner.ParallelRunnable)}
+     */
+    private boolean handOver(ParallelSuiteRunner.ParallelRunnable runnable) {
+        final int target = healthiest();
+        if (target < 0) {
+            runnable.abandon();
+            return false;
+        }
+        queues[target].addLast(runnable);
+        final int generation = generations[target];
+        pools[target].submit(() -> drain(target, generation));
+        return true;
+    }
+
+    private void notRun(int lane, ParallelSuiteRunner.ParallelRunnable runnable) {
+        parallelSuiteRunner.notRun(runnable, lane, new IllegalStateException(
+                String.format("not run, lane %d and all other lanes timed out", lane)));
+        parallelSuiteRunner.discard(runnable);
+        counter.arrive();
+    }
+
+    private int healthiest() {
+        int lane = -1;
+        for (int i = 0; i < length; i++) {
+            if (!retired[i] && (lane < 0 || queues[i].size() < queues[lane].size())) {
+                lane = i;
+            }
+        }
+        return lane;
+    }
+
+    private synchronized boolean start(int lane, int generation, ParallelSuiteRunner.ParallelRunnable runnable) {
+        if (generations[lane] != generation) {
+            return false;
+        }
+        running[lane] = runnable;
+        runningThreads[lane] = Thread.currentThread();
+        runningSince[lane] = System.nanoTime();
+        return true;
+    }
+
+    private synchronized void stop(int lane, ParallelSuiteRunner.ParallelRunnable runnable) {
+        if (running[lane] == runnable) {
+            running[lane] = null;
+            runningThreads[lane] = null;
+        }
+    }
+
+    private synchronized boolean isCurrent(int lane, int generation) {
+        return generations[lane] == generation;
+    }
+
+    private void drain(int lane, int generation) {
+        Thread.currentThread().setContextClassLoader(parallelSuiteRunner.classLoaders.get(lane));
+        ParallelSuiteRunner.ParallelRunnable runnable;
+        while (isCurrent(lane, generation) && (runnable = next(lane)) != null) {
+            if (!runnable.hasClassLoader() && parallelSuiteRunner.laneOf(runnable.getRunner()) != lane) {
+                // handed over by a retired lane
+                runnable = parallelSuiteRunner.rematerialize(runnable, lane);
+            } else {
+                runnable = parallelSuiteRunner.recycle(runnable, lane);
+            }
+            if (!start(lane, generation, runnable)) {
+                release(runnable);
+                requeue(lane, runnable);
+                return;
+            }
+            try {
+                runnable.run();
+            } finally {
+                stop(lane, runnable);
+                done(runnable);
+            }
+        }
+    }
+
+    /**
+     * Takes a class off the tail of the longest queue for a runner outside of the lanes, e.g. a remote worker, which
+     * reports it with {@link #done(ParallelSuiteRunner.ParallelRunnable)}.
+     *
+     * @return <code>null</code> if no class is queued
+     */
+    synchronized ParallelSuiteRunner.ParallelRunnable poll() {
+        if (locking) {
+            return claim(-1);
+        }
+        ParallelSuiteRunner.ParallelRunnable runnable = null;
+        while (runnable == null) {
+            int victim = -1;
+            for (int i = 0; i < length; i++) {
+                if (!retired[i] && !queues[i].isEmpty() && (victim < 0 || queues[i].size() > queues[victim].size())) {
+                    victim = i;
+                }
+            }
+            if (victim < 0) {
+                return null;
+            }
+            runnable = queues[victim].pollLast();
+        }
+        return runnable;
+    }
+
+    void done(ParallelSuiteRunner.ParallelRunnable runnable) {
+        runnable.finish();
+        parallelSuiteRunner.discard(runnable);
+        if (!runnable.isAbandoned()) {
+            release(runnable);
+            counter.arrive();
+        }
+    }
+
+    /**
+     * @return next runnable for the lane or <code>null</code> when the lane has nothing left to do
+     */
+    protected ParallelSuiteRunner.ParallelRunnable next(int lane) {
+        return locking ? claim(lane) : queues[lane].pollFirst();
+    }
+
+    /**
+     * @return <code>true</code> if classes are dispatched by their {@link ResourceLock}s rather than by their lanes
+     */
+    protected boolean isLocking() {
+        return locking;
+    }
+
+    /**
+     * Takes the first queued class whose resources can be locked now, from the lane's own queue first, then from the
+     * other lanes; a class of another lane is re-materialized by {@link #drain(int, int)}. Waits while every queued
+     * class conflicts with a running one.
+     *
+     * @param lane lane to prefer, -1 for none
+     * @return <code>null</code> if nothing is queued
+     */
+    private synchronized ParallelSuiteRunner.ParallelRunnable claim(int lane) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                boolean queued = false;
+                for (int i = 0; i < length; i++) {
+                    final Deque<ParallelSuiteRunner.ParallelRunnable> queue = queues[lane < 0 ? i : (lane + i) % length];
+                    for (Iterator<ParallelSuiteRunner.ParallelRunnable> it = queue.iterator(); it.hasNext(); ) {
+                        final ParallelSuiteRunner.ParallelRunnable runnable = it.next();
+                        queued = true;
+                        if (locks.tryAcquire(runnable.getClaims())) {
+                            it.remove();
+                            return runnable;
+                        }
+                    }
+                }
+                if (!queued) {
+                    return null;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void release(ParallelSuiteRunner.ParallelRunnable runnable) {
+        if (locking) {
+            locks.release(runnable.getClaims());
+            notifyAll();
+        }
     }
 
     private class NaiveThreadFactory implements ThreadFactory {
@@ -53,11 +429,9 @@ public class NaiveScheduler implements RunnerScheduler {
         @Override
         public Thread newThread(Runnable r) {
             int i = counter.getAndIncrement();
-            Thread thread = new Thread(group, r, String.format("runner-%d", i));
-            thread.setContextClassLoader(parallelSuiteRunner.classLoaders.get(i));
-            return thread;
+            return new Thread(group, r, String.format("runner-%d", i));
         }
 
     }
 
-}
\ No newline at end of file
+}
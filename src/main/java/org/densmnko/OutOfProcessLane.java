@@ -0,0 +1,22 @@
+package org.densmnko;
+
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.Closeable;
+
+/**
+ * Lane which runs test classes in another JVM and replays their {@link LaneProtocol} frames: a {@link ForkedLane} or
+ * a {@link RemoteWorker}.
+ */
+interface OutOfProcessLane extends Closeable {
+
+    /**
+     * Runs the class of the runner, firing its events into the notifier and writing its output into
+     * <code>System.out</code> of the calling thread. A lane lost in the middle of the class fails the class.
+     */
+    void run(Runner runner, RunNotifier notifier);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,132 @@
+package org.densmnko;
+
+import java.util.Arrays;
+
+/**
+ * Isolation rules of the lane class loaders, precompiled from <code>isolate</code> and <code>exclude</code> prefixes
+ * into a trie of package segments. A prefix matches like {@link String#startsWith(String)}, its last segment may be
+ * partial (<code>org.densmnko.Tmp</code> matches <code>org.densmnko.TmpTest</code>). The longest matching prefix
+ * decides, an exclude wins over an isolate of the same prefix. Immutable, shared by all lanes of a run.
+ */
+final class PackageTrie {
+
+    private static final String[] NONE = new String[0];
+
+    private final Node root = new Node();
+
+    private static final class Node {
+        String[] segments = NONE;
+        Node[] children = new Node[0];
+        // prefixes ending inside the next segment, the empty one ends right after this package
+        String[] partials = NONE;
+        boolean[] isolated = new boolean[0];
+
+        Node child(String name, int start, int end) {
+            for (int i = 0; i < segments.length; i++) {
+                final String segment = segments[i];
+                if (segment.length() == end - start && name.regionMatches(start, segment, 0, segment.length())) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(String segment) {
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i].equals(segment)) {
+                    return children[i];
+                }
+            }
+            final Node child = new Node();
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            segments[segments.length - 1] = segment;
+            children[children.length - 1] = child;
+            return child;
+        }
+
+        void addRule(String partial, boolean isolate) {
+            for (int i = 0; i < partials.length; i++) {
+                if (partials[i].equals(partial)) {
+                    isolated[i] &= isolate;
+                    return;
+                }
+            }
+            partials = Arrays.copyOf(partials, partials.length + 1);
+            isolated = Arrays.copyOf(isolated, isolated.length + 1);
+            partials[partials.length - 1] = partial;
+            isolated[isolated.length - 1] = isolate;
+        }
+    }
+
+    private PackageTrie() {
+    }
+
+    static PackageTrie of(String[] isolate, String[] exclude) {
+        final PackageTrie trie = new PackageTrie();
+        if (isolate != null) {
+            for (String prefix : isolate) {
+                trie.add(prefix, true);
+            }
+        }
+        if (exclude != null) {
+            for (String prefix : exclude) {
+                trie.add(prefix, false);
+            }
+        }
+        return trie;
+    }
+
+    private void add(String prefix, boolean isolate) {
+        Node node = root;
+        int start = 0;
+        int dot;
+        while ((dot = prefix.indexOf('.', start)) >= 0) {
+            node = node.addChild(prefix.substring(start, dot));
+            start = dot + 1;
+        }
+        node.addRule(prefix.substring(start), isolate);
+    }
+
+    /**
+     * @param name binary name of a class
+     */
+    boolean isIsolated(String name) {
+        return match(name, '.');
+    }
+
+    /**
+     * @param path resource path, e.g. <code>org/densmnko/lane.properties</code>
+     */
+    boolean isIsolatedResource(String path) {
+        return match(path.startsWith("/") ? path.substring(1) : path, '/');
+    }
+
+    private boolean match(String name, char separator) {
+        boolean isolated = false;
+        int longest = -1;
+        Node node = root;
+        int start = 0;
+        while (node != null) {
+            int end = name.indexOf(separator, start);
+            if (end < 0) {
+                end = name.length();
+            }
+            for (int i = 0; i < node.partials.length; i++) {
+                final String partial = node.partials[i];
+                final int length = start + partial.length();
+                if (partial.length() <= end - start && name.regionMatches(start, partial, 0, partial.length())
+                        && (length > longest || length == longest && !node.isolated[i])) {
+                    longest = length;
+                    isolated = node.isolated[i];
+                }
+            }
+            if (end == name.length()) {
+                break;
+            }
+            node = node.child(name, start, end);
+            start = end + 1;
+        }
+        return isolated;
+    }
+}
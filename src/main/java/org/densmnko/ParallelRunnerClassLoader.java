@@ -1,40 +1,235 @@
 package org.densmnko;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.Enumeration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
 
+/**
+ * Lane class loader: defines isolated classes on its own and delegates everything else to the parent. Registered as
+ * parallel capable, threads of a lane only wait for each other when they load the same class.
+ */
 class ParallelRunnerClassLoader extends URLClassLoader {
 
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * Where the runner itself is loaded from, its classes are always shared even if their package is isolated.
+     */
+    private static final CodeSource RUNNER = ParallelRunnerClassLoader.class.getProtectionDomain().getCodeSource();
+    private static final String RUNNER_PACKAGE = ParallelRunnerClassLoader.class.getName()
+            .substring(0, ParallelRunnerClassLoader.class.getName().lastIndexOf('.') + 1);
+
+    /**
+     * <code>ClassLoader.getDefinedPackage</code> of Java 9+, reached by reflection so the runner still builds and
+     * runs on Java 8; <code>null</code> there.
+     */
+    private static final Method GET_DEFINED_PACKAGE = definedPackageMethod();
 
     private final int lane;
     private final ClassLoader parent;
-    private final String[] isolate;
+    private final PackageTrie isolation;
+    private final ClassBytesCache cache;
+    private final AtomicLong definedClasses = new AtomicLong();
+    private final AtomicLong definingNanos = new AtomicLong();
+    private final AtomicLong definedBytes = new AtomicLong();
+    private final Set<String> definedClassNames = ConcurrentHashMap.newKeySet();
 
     public ParallelRunnerClassLoader(int lane, ClassLoader parent, String[] isolate) {
-        super(((URLClassLoader)parent).getURLs(), null);
+        this(lane, parent, PackageTrie.of(isolate, null));
+    }
+
+    ParallelRunnerClassLoader(int lane, ClassLoader parent, PackageTrie isolation) {
+        this(lane, parent, isolation, ClassBytesCache.of(ClassBytesCache.classpath(parent)));
+    }
+
+    ParallelRunnerClassLoader(int lane, ClassLoader parent, PackageTrie isolation, ClassBytesCache cache) {
+        super(cache.getURLs(), null);
         this.lane = lane;
         this.parent = parent;
-        this.isolate = isolate;
+        this.isolation = isolation;
+        this.cache = cache;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    /**
+     * @return number of isolated classes defined by this loader
+     */
+    long getDefinedClasses() {
+        return definedClasses.get();
+    }
+
+    /**
+     * @return time spent reading and defining isolated classes
+     */
+    long getDefiningNanos() {
+        return definingNanos.get();
+    }
+
+    /**
+     * @return bytecode size of isolated classes defined by this loader
+     */
+    long getDefinedBytes() {
+        return definedBytes.get();
+    }
+
+    /**
+     * @return names of isolated classes defined by this loader so far
+     */
+    Set<String> getDefinedClassNames() {
+        return definedClassNames;
+    }
+
+    ClassBytesCache getClassBytesCache() {
+        return cache;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!isolation.isIsolated(name)) {
+            return parent.loadClass(name);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> c = findLoadedClass(name);
+            if (c == null) {
+                if (isRunnerClass(name)) {
+                    return parent.loadClass(name);
+                }
+                c = findClass(name);
+            }
+            if (resolve) {
+                resolveClass(c);
+            }
+            return c;
+        }
     }
 
+    /**
+     * Resources of isolated packages come from the lane class path first, all others from the parent.
+     */
     @Override
-    public synchronized Class<?> loadClass(String name) throws ClassNotFoundException {
-        if ( isIsolated(name) ) {
-            final Class<?> c = findLoadedClass(name);
-            return c == null ? findClass(name) : c;
+    public URL getResource(String name) {
+        if (!isolation.isIsolatedResource(name)) {
+            return parent.getResource(name);
+        }
+        final URL url = findResource(name);
+        return url != null ? url : parent.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        return isolation.isIsolatedResource(name) ? findResources(name) : parent.getResources(name);
+    }
+
+    /**
+     * Defines isolated class from bytes shared by all lanes, falls back to own URLs if the cache can't read it.
+     */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        final long start = System.nanoTime();
+        final Class<?> c = defineIsolated(name);
+        final long nanos = System.nanoTime() - start;
+        definedClasses.incrementAndGet();
+        definedClassNames.add(name);
+        definingNanos.addAndGet(nanos);
+        JfrEvents.classDefined(lane, name, nanos);
+        return c;
+    }
+
+    private static Method definedPackageMethod() {
+        try {
+            return ClassLoader.class.getMethod("getDefinedPackage", String.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return package defined by this loader, or on Java 8 by this loader or its ancestors
+     */
+    @SuppressWarnings("deprecation")
+    private Package definedPackage(String packageName) {
+        if (GET_DEFINED_PACKAGE != null) {
+            try {
+                return (Package) GET_DEFINED_PACKAGE.invoke(this, packageName);
+            } catch (ReflectiveOperationException e) {
+                // fall back to the Java 8 lookup
+            }
         }
-        return parent.loadClass(name);
+        return getPackage(packageName);
     }
 
-    private boolean isIsolated(String name) {
-        if (isolate != null && isolate.length > 0 ) {
-            for ( String aPackage : isolate ) {
-                if ( name.startsWith(aPackage)) {
-                    return true;
+    private Class<?> defineIsolated(String name) throws ClassNotFoundException {
+        final ClassBytesCache.ClassBytes classBytes = cache.get(name);
+        if (classBytes == null) {
+            return super.findClass(name);
+        }
+        final int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            definePackage(name.substring(0, dot), classBytes);
+        }
+        definedBytes.addAndGet(classBytes.bytes.length);
+        return defineClass(name, classBytes.bytes, 0, classBytes.bytes.length, classBytes.codeSource);
+    }
+
+    /**
+     * Defines the package of a class the way {@link URLClassLoader} does: with the attributes of the jar manifest,
+     * and checked against the sealing of an already defined one.
+     */
+    private void definePackage(String packageName, ClassBytesCache.ClassBytes classBytes) {
+        final URL url = classBytes.codeSource != null ? classBytes.codeSource.getLocation() : null;
+        final Manifest manifest = classBytes.manifest;
+        Package pkg = definedPackage(packageName);
+        if (pkg == null) {
+            try {
+                if (manifest != null) {
+                    definePackage(packageName, manifest, url);
+                } else {
+                    definePackage(packageName, null, null, null, null, null, null, null);
                 }
+                return;
+            } catch (IllegalArgumentException e) {
+                // defined concurrently
+                pkg = definedPackage(packageName);
             }
         }
-        return false;
+        if (pkg.isSealed() && !pkg.isSealed(url)) {
+            throw new SecurityException("sealing violation: package " + packageName + " is sealed");
+        }
+        if (!pkg.isSealed() && manifest != null && isSealed(packageName, manifest)) {
+            throw new SecurityException("sealing violation: can't seal package " + packageName + ": already loaded");
+        }
+    }
+
+    private static boolean isSealed(String packageName, Manifest manifest) {
+        final Attributes attributes = manifest.getAttributes(packageName.replace('.', '/') + '/');
+        String sealed = attributes != null ? attributes.getValue(Attributes.Name.SEALED) : null;
+        if (sealed == null) {
+            sealed = manifest.getMainAttributes().getValue(Attributes.Name.SEALED);
+        }
+        return "true".equalsIgnoreCase(sealed);
+    }
+
+    private boolean isRunnerClass(String name) {
+        if (RUNNER == null || !name.startsWith(RUNNER_PACKAGE)) {
+            return false;
+        }
+        final ClassBytesCache.ClassBytes classBytes = cache.get(name);
+        return classBytes != null && classBytes.codeSource != null
+                && Objects.equals(classBytes.codeSource.getLocation(), RUNNER.getLocation());
     }
 
 }
@@ -1,8 +1,11 @@
 package org.densmnko;
 
+import org.junit.AssumptionViolatedException;
 import org.junit.runner.Description;
 import org.junit.runner.Result;
 import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 import org.junit.runner.notification.RunNotifier;
@@ -14,9 +17,19 @@ import org.junit.runners.model.RunnerBuilder;
 import org.junit.runners.model.RunnerScheduler;
 import org.junit.runners.model.Statement;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.lang.annotation.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Handler;
 
 
 /**
@@ -29,9 +42,34 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
     private final Map<Runner, Integer> runnersLanes;
 
     private final PrintStream systemOut;
+    private final PrintStream systemErr;
     private final RunnerOutputStream runnerStream;
     private final NaiveScheduler scheduler;
 
+    private final RunnerBuilder builder;
+    private final ClassLoader parentClassLoader;
+    private final PackageTrie isolation;
+    private final TimingStore timings;
+    private final ForkedLane[] forkedLanes;
+    private final boolean streaming;
+    private final boolean initialize;
+    private final Set<String> parallelMethods = new HashSet<>();
+    private final ExecutorService[] methodPools;
+    private volatile EventDispatcher dispatcher;
+    private final RunMetrics metrics;
+    private final boolean savingMetrics;
+    private final FailFast failFast;
+    private final IncrementalCache incremental;
+    private final int coordinatorPort;
+    private final String coordinatorAddress;
+    private final LaneRecycler recycler;
+    private final MethodShards methodShards;
+    private final boolean reporting;
+    private volatile ReportWriter reports;
+    private final FlakyRetry retry;
+    private final ClassHistory history;
+    private final Comparator<String> priority;
+
     /**
      * The <code>Suites</code> annotation specifies the list of <code>SuiteClasses</code> to be run in parallel when a class
      * annotated with <code>@RunWith(ParallelSuite.class)</code> is run.
@@ -40,8 +78,196 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
     @Target(ElementType.TYPE)
     @Inherited
     public @interface Suites {
-        Suite.SuiteClasses[] value();
+        Suite.SuiteClasses[] value() default {};
         String[] isolate();
+
+        /**
+         * Prefixes of classes and resources which are never isolated, even if they fall under {@link #isolate()};
+         * the longest matching prefix decides. Classes of the runner itself are never isolated.
+         */
+        String[] exclude() default {};
+
+        /**
+         * Flat list of classes to be packed into lanes by durations of previous runs.
+         */
+        Class<?>[] classes() default {};
+
+        /**
+         * {@link #lanes()} sized by the host: one lane per processor, as far as heap and metaspace headroom cover
+         * {@link #laneMemory()} for every lane.
+         */
+        int AUTO = -1;
+
+        /**
+         * Number of lanes for {@link #classes()}. When set, classes of {@link #value()} are packed into lanes as well,
+         * instead of running each <code>SuiteClasses</code> in its own lane. Zero means one lane per processor,
+         * {@link #AUTO} sizes lanes by processors and memory.
+         */
+        int lanes() default 0;
+
+        /**
+         * Heap and metaspace one lane is expected to take, in megabytes, for {@link #AUTO} lanes.
+         */
+        int laneMemory() default 64;
+
+        /**
+         * Lets idle lanes steal test classes queued in other lanes. Stolen class runs in a spare class loader, so
+         * classes must not rely on static state left by the classes listed before them in the same lane.
+         */
+        boolean stealing() default false;
+
+        /**
+         * Runs each lane in a forked JVM instead of a thread and class loader, for tests which can not share a JVM
+         * (JNI, <code>System.exit</code>, global singletons outside of isolated packages). Test classes are loaded but
+         * not initialized in the parent JVM.
+         */
+        boolean fork() default false;
+
+        /**
+         * JVM arguments of forked lanes, see {@link #fork()}.
+         */
+        String[] forkArgs() default {};
+
+        /**
+         * Streams events and output of every lane into the notifier as they happen, instead of replaying them when the
+         * whole test class is done.
+         */
+        boolean streaming() default false;
+
+        /**
+         * Initializes test classes while setting up the lanes. When <code>false</code>, static initializers run on the
+         * lane thread when a class is about to run.
+         */
+        boolean initialize() default true;
+
+        /**
+         * Classes whose test methods run in parallel, on a pool of {@link #methodThreads()} threads per lane sharing
+         * the lane class loader. Methods of these classes must not depend on each other.
+         */
+        Class<?>[] parallelMethods() default {};
+
+        /**
+         * Size of the per-lane pool for {@link #parallelMethods()}, one thread per processor by default.
+         */
+        int methodThreads() default 0;
+
+        /**
+         * Takes lane threads from the process-wide {@link LanePool} and gives them back when the run is over, so a
+         * long-lived process does not start new lane threads for every run. Class loaders are still fresh for every
+         * run.
+         */
+        boolean reuseLanes() default false;
+
+        /**
+         * Stops the run after this many test failures, zero to run everything. Classes not started yet are reported
+         * as ignored; running lanes are interrupted and tests they have not started yet are reported as ignored.
+         */
+        int failFast() default 0;
+
+        /**
+         * Time budget of the run in seconds, zero for none. When it is over the run stops as with {@link #failFast()}.
+         */
+        int timeBudget() default 0;
+
+        /**
+         * Seconds a test class may run, zero for no limit. A class over it fails with a dump of the runner threads;
+         * its lane thread is interrupted and left behind, and the lane goes on with the next class on a new thread.
+         */
+        int classTimeout() default 0;
+
+        /**
+         * Seconds a lane may run, zero for no limit. A lane over it fails its current class as with
+         * {@link #classTimeout()} and hands the classes it has not started over to the other lanes.
+         */
+        int laneTimeout() default 0;
+
+        /**
+         * Skips test classes which passed before and whose bytecode, and bytecode of isolated classes their lane had
+         * loaded, is unchanged since; their recorded events are replayed instead. Not supported with {@link #fork()}.
+         */
+        boolean incremental() default false;
+
+        /**
+         * Runs lanes on virtual threads (Java 21+), so tests which mostly sleep or wait can run in hundreds of lanes.
+         * Lanes are not limited by processors then, with {@link #AUTO} only by memory.
+         */
+        boolean virtualThreads() default false;
+
+        /**
+         * Port to share the run with worker JVMs on, possibly on other hosts, started with {@link ParallelWorkerMain}.
+         * Workers take classes from the lane queues alongside the lanes, their results show up in the same test tree.
+         * Classes run by workers are not tracked by {@link #incremental()} and {@link #classTimeout()}.
+         */
+        int coordinator() default 0;
+
+        /**
+         * Address the {@link #coordinator()} listens on, the loopback interface by default; e.g. an address of the
+         * host, or <code>0.0.0.0</code>, to let workers on other hosts in. Workers have to present the token of the
+         * run, set with <code>-Dparallel-runner.token</code> or <code>PARALLEL_RUNNER_TOKEN</code> on both sides.
+         */
+        String coordinatorAddress() default "";
+
+        /**
+         * Gives a lane a fresh class loader after this many test classes, 1 for a class loader per class, so static
+         * state of isolated classes does not pile up over a long run. Classes then run in loaders of their own, not in
+         * the ones their runners were built in; with {@link #initialize()} <code>false</code> those stay light.
+         */
+        int recycleAfter() default 0;
+
+        /**
+         * Gives a lane a fresh class loader once the isolated classes defined by its current one exceed this many
+         * megabytes of bytecode, a proxy of the metaspace the loader holds. May be combined with {@link #recycleAfter()}.
+         */
+        int recycleMemory() default 0;
+
+        /**
+         * With {@link #recycleAfter()} or {@link #recycleMemory()}, reports retired class loaders which are still
+         * reachable at the end of the run and what holds them. Takes a few full garbage collections.
+         */
+        boolean reportLeaks() default false;
+
+        /**
+         * Test classes to split into method shards, for classes long enough to cap the wall time of the suite. Every
+         * shard runs a part of the test methods in a lane of its own, with its own class loader and class-level
+         * fixtures; results are reported under the class description as if it ran whole.
+         */
+        Class<?>[] shard() default {};
+
+        /**
+         * Shards of every class listed in {@link #shard()}, one per lane by default.
+         */
+        int shards() default 0;
+
+        /**
+         * Writes a JUnit XML report per test class and a JSONL stream of all events into <code>reports</code> under
+         * the {@link TimingStore#directory()}, while the run goes on. Reports are written on a thread of their own,
+         * lanes never wait on them.
+         */
+        boolean reports() default false;
+
+        /**
+         * Retries a failed test method up to this many times, right after its class ran: failed methods of a class are
+         * retried in parallel, every attempt in a fresh class loader of the lane. A test which passes on retry is
+         * reported as passed and named as flaky in the output; retried tests are kept in <code>flaky.properties</code>
+         * under the {@link TimingStore#directory()}. Not supported with {@link #streaming()}, {@link #fork()} and
+         * on {@link #coordinator()} workers, and failures count for {@link #failFast()} before they are retried.
+         */
+        int retries() default 0;
+
+        /**
+         * Orders test classes by their history instead of declaration order: classes which failed in the last run
+         * first, then classes whose bytecode changed since or which are new, then the rest; longest first within each
+         * of these. Applies to the order within every lane and, for packed {@link #classes()}, to the packing, so
+         * such classes start right away on different lanes. Can also be turned on with
+         * <code>-Dparallel-runner.prioritize=true</code>.
+         */
+        boolean prioritize() default false;
+
+        /**
+         * Writes per-lane and per-class metrics of the run to <code>metrics.json</code> under the
+         * {@link TimingStore#directory()}. Can also be turned on with <code>-Dparallel-runner.metrics=true</code>.
+         */
+        boolean metrics() default false;
     }
 
     /**
@@ -56,36 +282,182 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
         if (annotation == null) {
             throw new InitializationError(String.format("class '%s' must have a Suites annotation", klass.getName()));
         }
-        Suite.SuiteClasses[] suites = annotation.value();
+        if (annotation.virtualThreads() && !VirtualThreads.isAvailable()) {
+            throw new InitializationError(String.format("class '%s' asks for virtual thread lanes, which need Java 21+", klass.getName()));
+        }
+        final boolean packing = annotation.classes().length > 0 || annotation.lanes() != 0;
+        final boolean prioritizing = annotation.prioritize() || Boolean.getBoolean(ClassHistory.PRIORITIZE_PROPERTY);
+        // durations are only read by packing, prioritizing and spreading shards
+        timings = packing || prioritizing || annotation.shard().length > 0 ? TimingStore.load() : new TimingStore(null);
+        history = prioritizing ? ClassHistory.load(Thread.currentThread().getContextClassLoader()) : null;
+        priority = history != null ? history.priority(timings) : null;
+        final List<List<Class<?>>> lanes = lanes(annotation, timings, priority);
+        if (lanes.isEmpty()) {
+            throw new InitializationError(String.format("class '%s' has no classes to run in Suites annotation", klass.getName()));
+        }
+        methodShards = new MethodShards(annotation.shard(), Math.min(annotation.shards() > 0 ? annotation.shards() : lanes.size(), lanes.size()));
+        methodShards.spread(lanes, timings);
         final Map<Runner, Integer> runnersLanes = new HashMap<>();
         final List<Runner> runners = new ArrayList<>();
         classLoaders = new ArrayList<>();
-        ClassLoader parentClassLoader = Thread.currentThread().getContextClassLoader();
-        for (int i = 0; i < suites.length; i++) {
+        this.builder = builder;
+        this.parentClassLoader = Thread.currentThread().getContextClassLoader();
+        this.isolation = PackageTrie.of(annotation.isolate(), annotation.exclude());
+        this.initialize = annotation.initialize() && !annotation.fork();
+        runnerStream = new RunnerOutputStream();
+        // method schedulers of the runners built below take it
+        failFast = new FailFast(annotation.failFast(), annotation.timeBudget());
+        for (int i = 0; i < lanes.size(); i++) {
+            classLoaders.add(newClassLoader(i));
+        }
+        for (Class<?> aClass : annotation.parallelMethods()) {
+            parallelMethods.add(aClass.getName());
+        }
+        if (parallelMethods.isEmpty()) {
+            methodPools = null;
+        } else {
+            methodPools = new ExecutorService[lanes.size()];
+            final int threads = annotation.methodThreads() > 0 ? annotation.methodThreads() : Runtime.getRuntime().availableProcessors();
+            for (int i = 0; i < methodPools.length; i++) {
+                methodPools[i] = MethodScheduler.newPool(i, threads);
+            }
+        }
+        final LanePool lanePool = annotation.reuseLanes() && !annotation.virtualThreads() ? LanePool.shared() : null;
+        final ThreadFactory threadFactory = annotation.virtualThreads() ? VirtualThreads.factory() : null;
+        scheduler = annotation.stealing()
+                ? new WorkStealingScheduler(lanes.size(), this, lanePool, threadFactory)
+                : new NaiveScheduler(lanes.size(), this, lanePool, threadFactory);
+        if (annotation.classTimeout() > 0 || annotation.laneTimeout() > 0) {
+            scheduler.setWatchdog(new Watchdog(annotation.classTimeout(), annotation.laneTimeout()));
+        }
+        // lanes are set up concurrently, each on its own lane thread
+        final List<Future<List<Runner>>> laneRunners = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            final List<Class<?>> laneClasses = lanes.get(i);
+            final ClassLoader classLoader = classLoaders.get(i);
+            laneRunners.add(scheduler.submit(i, () -> {
+                List<Class<?>> classes = new ArrayList<>();
+                for ( Class<?> aClass : laneClasses ) {
+                    Class<?> aClassForLane = Class.forName(aClass.getName(), initialize, classLoader);
+                    classes.add(aClassForLane);
+                }
+                synchronized (builder) {
+                    return builder.runners(klass, classes);
+                }
+            }));
+        }
+        final List<Throwable> errors = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
             final int lane = i;
-            ParallelRunnerClassLoader classLoader = new ParallelRunnerClassLoader(lane, parentClassLoader, annotation.isolate() );
-            classLoaders.add(classLoader);
-            List<Class<?>> classes = new ArrayList<>();
-            for ( Class<?> aClass : suites[lane].value() ) {
-                Class<?> aClassForLane = Class.forName(aClass.getName(), true, classLoader);
-                classes.add(aClassForLane);
+            try {
+                for (Runner built : getUninterruptibly(laneRunners.get(lane))) {
+                    final Runner runner = methodShards.apply(built);
+                    if (runner != null) {
+                        configure(runner, lane);
+                        runners.add(runner);
+                        runnersLanes.put(runner, lane);
+                    }
+                }
+            } catch (ExecutionException e) {
+                final List<Throwable> causes = e.getCause() instanceof InitializationError
+                        ? ((InitializationError) e.getCause()).getCauses()
+                        : Collections.singletonList(e.getCause());
+                causes.forEach(cause -> errors.add(new Exception(String.format("lane %d: %s", lane, cause), cause)));
             }
-            List<Runner> laneRunners = builder.runners(klass, classes);
-            runners.addAll(laneRunners);
-            laneRunners.forEach(r -> runnersLanes.put(r, lane));
         }
+        if (!errors.isEmpty()) {
+            scheduler.shutdown();
+            throw new InitializationError(errors);
+        }
+        if (annotation.fork()) {
+            forkedLanes = new ForkedLane[lanes.size()];
+            for (int i = 0; i < forkedLanes.length; i++) {
+                forkedLanes[i] = new ForkedLane(i, annotation.forkArgs());
+            }
+        } else {
+            forkedLanes = null;
+        }
+        streaming = annotation.streaming();
         this.runnersLanes = Collections.unmodifiableMap(runnersLanes);
         this.runners = Collections.unmodifiableList(runners);
-        scheduler = new NaiveScheduler(suites.length, this);
+        metrics = new RunMetrics(lanes.size());
+        savingMetrics = annotation.metrics() || Boolean.getBoolean(RunMetrics.METRICS_PROPERTY);
+        incremental = annotation.incremental() && !annotation.fork() ? new IncrementalCache() : null;
+        coordinatorPort = annotation.coordinator();
+        coordinatorAddress = annotation.coordinatorAddress();
+        reporting = annotation.reports();
+        retry = annotation.retries() > 0 && !annotation.fork() && !annotation.streaming()
+                ? new FlakyRetry(this, runnerStream, annotation.retries())
+                : null;
+        recycler = (annotation.recycleAfter() > 0 || annotation.recycleMemory() > 0) && !annotation.fork()
+                ? new LaneRecycler(this, lanes.size(), annotation.recycleAfter(), annotation.recycleMemory(), runnerStream,
+                        annotation.reportLeaks() ? new LeakDetector() : null)
+                : null;
         setScheduler(scheduler);
         systemOut = System.out;
-        System.out.flush();
-        runnerStream = new RunnerOutputStream();
-        System.setOut(new PrintStream(runnerStream));
+        systemErr = System.err;
     }
 
 
 
+    /**
+     * Sets up method-level parallelism for classes listed in {@link Suites#parallelMethods()}.
+     */
+    private void configure(Runner runner, int lane) {
+        final Class<?> testClass = runner.getDescription().getTestClass();
+        if (methodPools != null && runner instanceof ParentRunner && testClass != null && parallelMethods.contains(testClass.getName())) {
+            ((ParentRunner<?>) runner).setScheduler(new MethodScheduler(methodPools[lane], runnerStream, failFast));
+        }
+    }
+
+    private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Classes of each lane: <code>SuiteClasses</code> as written, or packed by {@link LanePacker} when
+     * {@link Suites#classes()} or {@link Suites#lanes()} is given.
+     *
+     * @param priority order of classes to pack first, see {@link Suites#prioritize()}, or <code>null</code>
+     */
+    private static List<List<Class<?>>> lanes(Suites annotation, TimingStore timings, Comparator<String> priority) {
+        final List<List<Class<?>>> lanes = new ArrayList<>();
+        if (annotation.classes().length == 0 && annotation.lanes() == 0) {
+            for (Suite.SuiteClasses suite : annotation.value()) {
+                lanes.add(new ArrayList<>(Arrays.asList(suite.value())));
+            }
+            return lanes;
+        }
+        final List<Class<?>> classes = new ArrayList<>(Arrays.asList(annotation.classes()));
+        for (Suite.SuiteClasses suite : annotation.value()) {
+            classes.addAll(Arrays.asList(suite.value()));
+        }
+        if (classes.isEmpty()) {
+            return lanes;
+        }
+        final int count = annotation.lanes() > 0 ? annotation.lanes()
+                : annotation.lanes() == Suites.AUTO ? LaneBudget.lanes(classes.size(), annotation.laneMemory(), !annotation.virtualThreads())
+                : Runtime.getRuntime().availableProcessors();
+        // every shard of a class can take a lane of its own
+        final int shards = annotation.shards() > 0 ? Math.min(annotation.shards(), count) : count;
+        final List<Class<?>> sharded = Arrays.asList(annotation.shard());
+        final int units = classes.size() + (int) classes.stream().filter(sharded::contains).count() * (shards - 1);
+        return LanePacker.pack(classes, Math.min(count, units), timings, priority);
+    }
+
     protected List<Runner> getChildren() {
         return runners;
     }
@@ -95,16 +467,46 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
         return child.getDescription();
     }
 
+    /**
+     * @return description of the suite, with method shards of a class merged back under one class description
+     */
+    @Override
+    public Description getDescription() {
+        return methodShards.merge(super.getDescription());
+    }
+
     static class RunNotifierRecorder extends RunNotifier {
 
         private final RunnerOutputStream runnerStream;
-        private final Thread currentThread;
         private final PrintStream systemOut;
+        private final PrintStream systemErr;
+        private final Consumer<Event> sink;
+        private final Consumer<Event> report;
+        private final FailFast failFast;
+        private final Set<Description> reported = new HashSet<>();
+        private long outputBytes;
+        private boolean failed;
+
+        RunNotifierRecorder(RunnerOutputStream runnerStream, PrintStream systemOut) {
+            this(runnerStream, systemOut, System.err, null, null, null);
+        }
 
-        RunNotifierRecorder(RunnerOutputStream runnerStream, Thread currentThread, PrintStream systemOut) {
+        /**
+         * Records events fired from any thread, each with output of the thread which fired it: the test's own output
+         * when its methods run in parallel, see {@link Suites#parallelMethods()}, or the lane output otherwise.
+         *
+         * @param sink     receives events as they are recorded, instead of keeping them for {@link #replay(RunNotifier)}
+         * @param report   also receives events as they are recorded, see {@link ReportWriter}, or <code>null</code>
+         * @param failFast stop signal of the run, raised by failures and {@link #pleaseStop()}, or <code>null</code>
+         */
+        RunNotifierRecorder(RunnerOutputStream runnerStream, PrintStream systemOut, PrintStream systemErr, Consumer<Event> sink,
+                            Consumer<Event> report, FailFast failFast) {
             this.runnerStream = runnerStream;
-            this.currentThread = currentThread;
             this.systemOut = systemOut;
+            this.systemErr = systemErr;
+            this.sink = sink != null ? sink : events::add;
+            this.report = report;
+            this.failFast = failFast;
         }
 
         enum Method {
@@ -114,14 +516,42 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
         static class Event {
             final Method method;
             final Object parameter;
-            final String output;
-            final String generalOut;
+            final CapturedOutput output;
+            final CapturedOutput generalOut;
+            final CapturedOutput err;
+            final CapturedOutput generalErr;
 
-            Event(Method method, Object parameter, String output, String generalOut) {
+            Event(Method method, Object parameter, CapturedOutput output, CapturedOutput generalOut) {
+                this(method, parameter, output, generalOut, CapturedOutput.EMPTY, CapturedOutput.EMPTY);
+            }
+
+            Event(Method method, Object parameter, CapturedOutput output, CapturedOutput generalOut,
+                  CapturedOutput err, CapturedOutput generalErr) {
                 this.method = method;
                 this.parameter = parameter;
                 this.output = output;
                 this.generalOut = generalOut;
+                this.err = err;
+                this.generalErr = generalErr;
+            }
+
+            /**
+             * @return output-only event with everything captured so far for the thread's lane and the general lane
+             */
+            static Event output(RunnerOutputStream runnerStream, Thread thread) {
+                return new Event(null, null, runnerStream.getAndReset(thread), runnerStream.getAndResetGeneral(),
+                        runnerStream.getAndResetErr(thread), runnerStream.getAndResetGeneralErr());
+            }
+
+            /**
+             * @return output-only event with the output of the given one
+             */
+            static Event outputOf(Event event) {
+                return new Event(null, null, event.output, event.generalOut, event.err, event.generalErr);
+            }
+
+            long size() {
+                return output.size() + generalOut.size() + err.size() + generalErr.size();
             }
         }
 
@@ -171,13 +601,24 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
         @Override
         public void fireTestStarted(Description description) throws StoppedByUserException {
             System.out.println("notifier.fireTestStarted(description): " + description);
+            if (failFast != null && failFast.isStopped()) {
+                throw new StoppedByUserException();
+            }
             record(Method.fireTestStarted, description);
         }
 
         @Override
         public void fireTestFailure(Failure failure) {
             System.out.println("notifier.fireTestFailure(failure): " + failure);
-            record(Method.fireTestFailure, failure);
+            if (failFast == null) {
+                record(Method.fireTestFailure, failure);
+            } else if (failFast.isInterruption(failure.getException())) {
+                record(Method.fireTestAssumptionFailed, new Failure(failure.getDescription(),
+                        new AssumptionViolatedException(failFast.getReason(), failure.getException())));
+            } else {
+                record(Method.fireTestFailure, failure);
+                failFast.failed();
+            }
         }
 
         @Override
@@ -201,54 +642,107 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
         @Override
         public void pleaseStop() {
             System.out.println("notifier.pleaseStop()");
-            record(Method.pleaseStop, null);
+            if (failFast == null) {
+                record(Method.pleaseStop, null);
+            } else {
+                failFast.stop("notifier.pleaseStop()");
+            }
         }
 
-        private void record(Method method, Object parameter) {
-            events.add(new Event(method, parameter, runnerStream.getAndReset(currentThread), runnerStream.getAndResetGeneral()));
+        /**
+         * Reports tests of a stopped class which were neither started nor ignored as ignored.
+         */
+        void skipNotReported(Description description) {
+            final List<Description> tests = new ArrayList<>();
+            DescriptionFilter.collectTests(description, tests);
+            for (Description test : tests) {
+                final boolean skipped;
+                synchronized (this) {
+                    skipped = !reported.contains(test);
+                }
+                if (skipped) {
+                    record(Method.fireTestIgnored, test);
+                }
+            }
+        }
+
+        private synchronized void record(Method method, Object parameter) {
+            if (method == Method.fireTestStarted || method == Method.fireTestIgnored) {
+                reported.add((Description) parameter);
+            } else if (method == Method.fireTestFailure) {
+                failed = true;
+            }
+            final Event event = new Event(method, parameter, runnerStream.getAndReset(), runnerStream.getAndResetGeneral(),
+                    runnerStream.getAndResetErr(), runnerStream.getAndResetGeneralErr());
+            outputBytes += event.size();
+            sink.accept(event);
+            if (report != null) {
+                report.accept(event);
+            }
+        }
+
+        synchronized long getOutputBytes() {
+            return outputBytes;
+        }
 
+        /**
+         * @return <code>true</code> if a failure was recorded, of a test which passed on retry too
+         */
+        synchronized boolean hasFailed() {
+            return failed;
         }
 
         protected void replay(RunNotifier notifier) {
-            events.forEach(e -> replayEvent(notifier, e));
+            events.forEach(e -> replayEvent(notifier, e, systemOut, systemErr));
         }
 
-        private void replayEvent(RunNotifier notifier, Event event) {
+        /**
+         * Writes event output and fires the event, event without method carries output only.
+         */
+        static void replayEvent(RunNotifier notifier, Event event, PrintStream systemOut, PrintStream systemErr) {
             writeSystemOut(event.generalOut, systemOut);
             writeSystemOut(event.output, systemOut);
-            switch (event.method) {
+            writeSystemOut(event.generalErr, systemErr);
+            writeSystemOut(event.err, systemErr);
+            if (event.method != null) {
+                fire(notifier, event.method, event.parameter);
+            }
+        }
+
+        static void fire(RunNotifier notifier, Method method, Object parameter) {
+            switch (method) {
                 case fireTestRunStarted:
-                    notifier.fireTestRunStarted((Description) event.parameter);
+                    notifier.fireTestRunStarted((Description) parameter);
                     break;
                 case fireTestRunFinished:
-                    notifier.fireTestRunFinished((Result) event.parameter);
+                    notifier.fireTestRunFinished((Result) parameter);
                     break;
                 case fireTestSuiteStarted:
-                    notifier.fireTestSuiteStarted((Description) event.parameter);
+                    notifier.fireTestSuiteStarted((Description) parameter);
                     break;
                 case fireTestSuiteFinished:
-                    notifier.fireTestSuiteFinished((Description) event.parameter);
+                    notifier.fireTestSuiteFinished((Description) parameter);
                     break;
                 case fireTestStarted:
-                    notifier.fireTestStarted((Description) event.parameter);
+                    notifier.fireTestStarted((Description) parameter);
                     break;
                 case fireTestFailure:
-                    notifier.fireTestFailure((Failure) event.parameter);
+                    notifier.fireTestFailure((Failure) parameter);
                     break;
                 case fireTestAssumptionFailed:
-                    notifier.fireTestAssumptionFailed((Failure) event.parameter);
+                    notifier.fireTestAssumptionFailed((Failure) parameter);
                     break;
                 case fireTestIgnored:
-                    notifier.fireTestIgnored((Description) event.parameter);
+                    notifier.fireTestIgnored((Description) parameter);
                     break;
                 case fireTestFinished:
-                    notifier.fireTestFinished((Description) event.parameter);
+                    notifier.fireTestFinished((Description) parameter);
                     break;
                 case pleaseStop:
                     notifier.pleaseStop();
                     break;
                 default:
-                    throw new IllegalStateException("unhandled method " + event.method);
+                    throw new IllegalStateException("unhandled method " + method);
             }
         }
     }
@@ -263,75 +757,463 @@ public class ParallelSuiteRunner extends ParentRunner<Runner> {
         };
     }
 
-    private void runChildren(final RunNotifier notifier) {
+    private void runChildren(final RunNotifier runNotifier) {
+        final RunNotifier notifier = methodShards.merging(runNotifier);
         final RunnerScheduler currentScheduler = scheduler;
+        if (streaming) {
+            dispatcher = new EventDispatcher(classLoaders.size(), notifier, systemOut, systemErr);
+        }
+        if (reporting) {
+            reports = new ReportWriter(ReportWriter.directory(), systemErr);
+        }
+        metrics.started();
+        failFast.started();
+        System.out.flush();
+        System.err.flush();
+        // before System.setErr: console handlers created lazily by the log manager would keep the capturing stream
+        final List<Handler> consoleHandlers = LaneLogHandler.install(runnerStream.err());
+        System.setOut(new CapturingPrintStream(runnerStream));
+        System.setErr(new CapturingPrintStream(runnerStream.err()));
+        final Coordinator coordinator = coordinatorPort > 0 ? new Coordinator(coordinatorPort, coordinatorAddress, scheduler, this) : null;
         try {
-            for (final Runner each : getChildren()) {
+            final List<Runner> children = new ArrayList<>(getChildren());
+            if (priority != null) {
+                // lane queues are taken in the order classes are scheduled
+                children.sort(Comparator.comparing(each -> each.getDescription().getDisplayName(), priority));
+            }
+            for (final Runner each : children) {
                 currentScheduler.schedule(new ParallelRunnable(each, notifier));
             }
+            if (coordinator != null) {
+                try {
+                    coordinator.start(systemOut);
+                } catch (IOException e) {
+                    systemErr.format("parallel-runner: unable to start coordinator on port %d, running locally: %s%n", coordinatorPort, e);
+                }
+            }
         } finally {
-            currentScheduler.finished();
+            try {
+                currentScheduler.finished();
+            } finally {
+                if (coordinator != null) {
+                    coordinator.close();
+                }
+                scheduler.shutdown();
+                LaneLogHandler.restore(consoleHandlers);
+                System.setOut(systemOut);
+                System.setErr(systemErr);
+            }
+            failFast.finished();
+            metrics.finished();
+            if (savingMetrics) {
+                metrics.save();
+            }
+            if (dispatcher != null) {
+                final EventDispatcher finishedDispatcher = dispatcher;
+                dispatcher = null;
+                finishedDispatcher.close();
+            }
+            if (reports != null) {
+                final ReportWriter finishedReports = reports;
+                reports = null;
+                finishedReports.close();
+            }
+            if (recycler != null) {
+                recycler.finished(systemOut);
+            }
+            if (retry != null) {
+                retry.finished(systemOut);
+            }
+            writeSystemOut(runnerStream.getAndResetGeneral(), systemOut);
+            writeSystemOut(runnerStream.getAndResetGeneralErr(), systemErr);
+            if (failFast.isStopped()) {
+                systemOut.format("parallel-runner: %s, tests not started are reported as ignored%n", failFast.getReason());
+            }
+            if (forkedLanes != null) {
+                for (ForkedLane lane : forkedLanes) {
+                    lane.close();
+                }
+            }
+            timings.save();
+            if (history != null) {
+                history.save();
+            }
+            ClassBytesCache.release(ClassBytesCache.classpath(parentClassLoader));
         }
     }
 
 
 
     protected void runChild(Runner runner, RunNotifier notifier) {
+        runChild(new ParallelRunnable(runner, notifier));
+    }
+
+    private void runChild(ParallelRunnable runnable) {
+        final long startNanos = System.nanoTime();
+        final Thread currentThread = Thread.currentThread();
+        System.out.format("%s: runChild: %s\n", currentThread, runnable.runner.getDescription());
+        final ParallelRunnerClassLoader classLoader = (ParallelRunnerClassLoader) currentThread.getContextClassLoader();
+        // output of the class and of threads it starts goes to the lane, whatever their context class loader is
+        runnerStream.bind(classLoader);
+        try {
+            runChild(runnable, classLoader, startNanos, forkedLanes != null ? forkedLanes[classLoader.getLane()] : null);
+        } finally {
+            runnerStream.unbind();
+        }
+    }
+
+    /**
+     * Runs a class taken off the lane queues on a remote worker, the calling thread replays its events.
+     */
+    void runRemote(ParallelRunnable runnable, RemoteWorker worker) {
+        final long startNanos = System.nanoTime();
         final Thread currentThread = Thread.currentThread();
-        System.out.format("%s: runChild: %s\n", currentThread, runner.getDescription());
-        final RunNotifierRecorder recorder = new RunNotifierRecorder(runnerStream, currentThread, systemOut);
-        final String prefix = runnerStream.getAndReset(currentThread);
-        final String prefixGen = runnerStream.getAndResetGeneral();
+        final ParallelRunnerClassLoader classLoader = runnable.hasClassLoader() ? runnable.classLoader : classLoaders.get(laneOf(runnable));
+        System.out.format("%s: runChild on %s: %s\n", currentThread, worker.getName(), runnable.runner.getDescription());
+        final ClassLoader previous = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(classLoader);
+        // the lane thread keeps writing into the lane buffers meanwhile
+        runnerStream.pin();
+        try {
+            runChild(runnable, classLoader, startNanos, worker);
+        } finally {
+            runnerStream.unpin();
+            currentThread.setContextClassLoader(previous);
+        }
+    }
+
+    private void runChild(ParallelRunnable runnable, ParallelRunnerClassLoader classLoader, long startNanos, OutOfProcessLane outOfProcess) {
+        final int lane = classLoader.getLane();
+        final Runner runner = runnable.runner;
+        final RunNotifier notifier = runnable.notifier;
+        final Thread currentThread = Thread.currentThread();
+        final EventDispatcher dispatcher = this.dispatcher;
+        final ReportWriter reports = this.reports;
+        // shards of a class would overwrite each other's records
+        final IncrementalCache incremental = outOfProcess == null && !methodShards.isShard(runnable.runner) ? this.incremental : null;
+        final long definedClasses = classLoader.getDefinedClasses();
+        final long definingNanos = classLoader.getDefiningNanos();
+        final Consumer<RunNotifierRecorder.Event> sink = dispatcher == null ? null : e -> {
+            if (!runnable.isAbandoned()) {
+                dispatcher.publish(lane, e);
+            }
+        };
+        final Consumer<RunNotifierRecorder.Event> report = reports == null ? null : e -> {
+            if (!runnable.isAbandoned()) {
+                reports.record(lane, runner.getDescription(), e);
+            }
+        };
+        final RunNotifierRecorder recorder = new RunNotifierRecorder(runnerStream, systemOut, systemErr, sink, report, failFast);
+        final RunNotifierRecorder.Event prefix = RunNotifierRecorder.Event.output(runnerStream, currentThread);
+        long outputBytes = prefix.size();
+        if (sink != null) {
+            sink.accept(prefix);
+        }
 
         RuntimeException exception = null;
+        final long start = System.currentTimeMillis();
+        boolean replayed = false;
+        if (!failFast.isStopped()) {
+            if (incremental != null && incremental.replay(runner.getDescription(), classLoader, recorder, System.out)) {
+                replayed = true;
+            } else {
+                final IncrementalCache.Recording recording = incremental != null ? incremental.record(runner.getDescription(), recorder) : null;
+                failFast.enter();
+                try {
+                    if (outOfProcess != null) {
+                        outOfProcess.run(runner, recorder);
+                    } else {
+                        runner.run(recording != null ? recording : recorder);
+                    }
+                } catch (StoppedByUserException e) {
+                    // stopped in the middle of the class, the rest of it is skipped below
+                } catch (RuntimeException e) {
+                    exception = e;
+                } finally {
+                    failFast.exit();
+                }
+                if (recording != null) {
+                    incremental.save(recording, classLoader, exception == null && !failFast.isStopped() && !runnable.isAbandoned());
+                }
+            }
+        }
+        if (failFast.isStopped()) {
+            recorder.skipNotReported(runner.getDescription());
+        } else if (!replayed) {
+            final String className = runner.getDescription().getDisplayName();
+            final long millis = System.currentTimeMillis() - start;
+            final long duration = methodShards.isShard(runner) ? methodShards.finished(className, millis) : millis;
+            if (duration >= 0) {
+                timings.record(className, duration);
+            }
+        }
+        if (history != null && (!failFast.isStopped() || recorder.hasFailed() || exception != null)) {
+            history.record(runner.getDescription().getDisplayName(), recorder.hasFailed() || exception != null);
+        }
+        final List<FlakyRetry.Outcome> retried = retry != null && sink == null && outOfProcess == null && !replayed
+                && exception == null && !failFast.isStopped() && !runnable.isAbandoned()
+                ? retry.retry(runnable, lane, recorder)
+                : Collections.emptyList();
+        final long runNanos = System.nanoTime() - startNanos;
+        long replayBlockedNanos = 0;
         try {
-            runner.run(recorder);
-        } catch (RuntimeException e) {
-            exception = e;
-        }
-        synchronized (this) {
-            writeSystemOut(prefix, systemOut);
-            writeSystemOut(prefixGen, systemOut);
-            recorder.replay(notifier);
-            final String postfix = runnerStream.getAndReset(currentThread);
-            writeSystemOut(postfix, systemOut);
-            final String postfixGen = runnerStream.getAndReset(currentThread);
-            writeSystemOut(postfixGen, systemOut);
-            if (exception != null) {
-                throw exception;
+            if (sink != null) {
+                final RunNotifierRecorder.Event postfix = RunNotifierRecorder.Event.output(runnerStream, currentThread);
+                outputBytes += postfix.size();
+                sink.accept(postfix);
+                runnable.finish();
+                if (exception != null) {
+                    throw exception;
+                }
+                return;
             }
+            if (!runnable.finish()) {
+                // given up by the watchdog, which has reported the class already
+                return;
+            }
+            final long waitNanos = System.nanoTime();
+            synchronized (this) {
+                replayBlockedNanos = System.nanoTime() - waitNanos;
+                RunNotifierRecorder.replayEvent(notifier, prefix, systemOut, systemErr);
+                recorder.replay(notifier);
+                if (!retried.isEmpty()) {
+                    retry.report(retried, systemOut, systemErr);
+                }
+                final RunNotifierRecorder.Event postfix = RunNotifierRecorder.Event.output(runnerStream, currentThread);
+                outputBytes += postfix.size();
+                RunNotifierRecorder.replayEvent(notifier, postfix, systemOut, systemErr);
+                if (exception != null) {
+                    throw exception;
+                }
+            }
+        } finally {
+            if (reports != null) {
+                retried.forEach(outcome -> reports.retried(lane, runner.getDescription(), outcome));
+                reports.classFinished(lane, runner.getDescription());
+            }
+            metrics.classFinished(new RunMetrics.ClassMetrics(lane, runner.getDescription().getDisplayName(),
+                    startNanos - runnable.scheduledNanos, runNanos, replayBlockedNanos, outputBytes + recorder.getOutputBytes(),
+                    classLoader.getDefinedClasses() - definedClasses, classLoader.getDefiningNanos() - definingNanos));
         }
     }
 
 
-    static void writeSystemOut(String string, PrintStream systemOut) {
-        if (string != null && !string.isEmpty()) {
-            systemOut.append(string);
+    static void writeSystemOut(CapturedOutput output, OutputStream systemOut) {
+        if (output != null && !output.isEmpty()) {
+            try {
+                output.writeTo(systemOut);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 
     public class ParallelRunnable implements Runnable {
 
+        private static final int RUNNING = 0;
+        private static final int FINISHED = 1;
+        private static final int ABANDONED = 2;
+
         private final Runner runner;
         private final RunNotifier notifier;
+        private final ParallelRunnerClassLoader classLoader;
+        private final long scheduledNanos;
+        private final ResourceClaims claims;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        // the class loader was made for this runnable alone and is discarded once it is done
+        private boolean spare;
 
         public ParallelRunnable(Runner each, RunNotifier notifier) {
+            this(each, notifier, null, System.nanoTime(), ResourceClaims.of(each.getDescription()));
+        }
+
+        ParallelRunnable(Runner each, RunNotifier notifier, ParallelRunnerClassLoader classLoader, long scheduledNanos, ResourceClaims claims) {
             this.runner = each;
             this.notifier = notifier;
+            this.classLoader = classLoader;
+            this.scheduledNanos = scheduledNanos;
+            this.claims = claims;
         }
 
         public Runner getRunner() {
             return runner;
         }
 
+        /**
+         * @return resources the class locks, see {@link ResourceLock}
+         */
+        ResourceClaims getClaims() {
+            return claims;
+        }
+
+        boolean hasClassLoader() {
+            return classLoader != null;
+        }
+
+        /**
+         * @return <code>true</code> if the runnable is done, <code>false</code> if it was abandoned before
+         */
+        boolean finish() {
+            return state.compareAndSet(RUNNING, FINISHED) || state.get() == FINISHED;
+        }
+
+        /**
+         * @return <code>true</code> if the runnable is abandoned, <code>false</code> if it has finished before
+         */
+        boolean abandon() {
+            return state.compareAndSet(RUNNING, ABANDONED);
+        }
+
+        boolean isAbandoned() {
+            return state.get() == ABANDONED;
+        }
+
         public void run() {
-            runChild(runner, notifier);
+            if (classLoader == null) {
+                runChild(this);
+            } else {
+                final Thread thread = Thread.currentThread();
+                final ClassLoader laneClassLoader = thread.getContextClassLoader();
+                thread.setContextClassLoader(classLoader);
+                try {
+                    runChild(this);
+                } finally {
+                    thread.setContextClassLoader(laneClassLoader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports a class abandoned by the {@link Watchdog} in the middle of its run, a forked lane running it is killed.
+     */
+    void timedOut(ParallelRunnable runnable, int lane, Throwable failure) {
+        if (forkedLanes != null) {
+            forkedLanes[lane].kill();
+        }
+        notRun(runnable, lane, failure);
+    }
+
+    /**
+     * Reports a class which will not run, or not run to the end, as failed.
+     */
+    void notRun(ParallelRunnable runnable, int lane, Throwable failure) {
+        final Failure classFailure = new Failure(runnable.runner.getDescription(), failure);
+        if (history != null) {
+            history.record(runnable.runner.getDescription().getDisplayName(), true);
+        }
+        final ReportWriter reports = this.reports;
+        if (reports != null) {
+            reports.record(lane, runnable.runner.getDescription(), new RunNotifierRecorder.Event(RunNotifierRecorder.Method.fireTestFailure,
+                    classFailure, CapturedOutput.EMPTY, CapturedOutput.EMPTY));
+            reports.classFinished(lane, runnable.runner.getDescription());
+        }
+        final EventDispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.publish(lane, new RunNotifierRecorder.Event(RunNotifierRecorder.Method.fireTestFailure, classFailure,
+                    CapturedOutput.EMPTY, CapturedOutput.EMPTY));
+        } else {
+            synchronized (this) {
+                runnable.notifier.fireTestFailure(classFailure);
+            }
+        }
+    }
+
+    /**
+     * Re-creates runnable's test class and runner in a spare class loader for the given lane.
+     *
+     * @return new runnable, or the same one if its runner is not backed by a single test class
+     */
+    ParallelRunnable rematerialize(ParallelRunnable runnable, int lane) {
+        final ParallelRunnerClassLoader spare = newClassLoader(lane);
+        final ParallelRunnable rematerialized = rematerialize(runnable, lane, spare);
+        if (rematerialized == runnable) {
+            discard(spare);
+        } else {
+            // set before the runnable is queued or run
+            rematerialized.spare = true;
+            discard(runnable);
+        }
+        return rematerialized;
+    }
+
+    /**
+     * Drops the spare class loader of a runnable which is done, see {@link #rematerialize(ParallelRunnable, int)}.
+     */
+    void discard(ParallelRunnable runnable) {
+        if (runnable.spare) {
+            discard(runnable.classLoader);
+        }
+    }
+
+    /**
+     * Drops the buffers of a class loader which is not used any more and closes its jars.
+     */
+    private void discard(ParallelRunnerClassLoader spare) {
+        runnerStream.forget(spare);
+        try {
+            spare.close();
+        } catch (IOException e) {
+            // its jars are closed once it is collected
+        }
+    }
+
+    /**
+     * Re-creates runnable's test class and runner in the given class loader.
+     */
+    ParallelRunnable rematerialize(ParallelRunnable runnable, int lane, ParallelRunnerClassLoader spare) {
+        return rematerialize(runnable, lane, spare, runnable.getRunner().getDescription());
+    }
+
+    /**
+     * Re-creates runnable's test class and runner in the given class loader, filtered down to the given tests.
+     */
+    ParallelRunnable rematerialize(ParallelRunnable runnable, int lane, ParallelRunnerClassLoader spare, Description tests) {
+        final Description description = runnable.getRunner().getDescription();
+        final Class<?> testClass = description.getTestClass();
+        if (testClass == null || failFast.isStopped()) {
+            return runnable;
+        }
+        try {
+            final Runner runner = builder.safeRunnerForClass(Class.forName(testClass.getName(), initialize, spare));
+            if (runner == null) {
+                return runnable;
+            }
+            if (runner instanceof Filterable) {
+                ((Filterable) runner).filter(DescriptionFilter.of(tests));
+            }
+            configure(runner, lane);
+            return new ParallelRunnable(runner, runnable.notifier, spare, runnable.scheduledNanos, runnable.claims);
+        } catch (ClassNotFoundException | NoTestsRemainException | LinkageError e) {
+            return runnable;
         }
     }
 
 
+    ParallelRunnerClassLoader newClassLoader(int lane) {
+        return new ParallelRunnerClassLoader(lane, parentClassLoader, isolation);
+    }
+
+    /**
+     * Moves the runnable into a fresh class loader of the lane if lanes are recycled, see {@link Suites#recycleAfter()}.
+     */
+    ParallelRunnable recycle(ParallelRunnable runnable, int lane) {
+        return recycler == null || runnable.hasClassLoader() ? runnable : recycler.next(runnable, lane);
+    }
+
+    /**
+     * @return lane the runner was assigned to, <code>-1</code> for a runner re-created in another class loader
+     */
     public int laneOf(Runner runner) {
-        return runnersLanes.get(runner);
+        final Integer lane = runnersLanes.get(runner);
+        return lane == null ? -1 : lane;
+    }
+
+    /**
+     * @return lane of the class loader the runnable was re-created in, or else the lane its runner was assigned to
+     */
+    int laneOf(ParallelRunnable runnable) {
+        return runnable.hasClassLoader() ? runnable.classLoader.getLane() : laneOf(runnable.runner);
     }
 
 
@@ -0,0 +1,68 @@
+package org.densmnko;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of a worker JVM for {@link ParallelSuiteRunner.Suites#coordinator()}, started on any host with the test
+ * classpath:
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.densmnko.ParallelWorkerMain host:port [connectTimeoutSeconds]
+ * </pre>
+ * Waits for the coordinator to come up, runs the classes it sends like a forked lane does and exits when the
+ * coordinator has no more classes. A worker runs one class at a time, start several of them to use more processors.
+ * The token of the run is taken from <code>-Dparallel-runner.token</code> or <code>PARALLEL_RUNNER_TOKEN</code>.
+ */
+public class ParallelWorkerMain {
+
+    private static final int DEFAULT_CONNECT_TIMEOUT = 60;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int colon = args.length == 0 ? -1 : args[0].lastIndexOf(':');
+        if (colon <= 0 || args.length > 2) {
+            System.err.println("usage: ParallelWorkerMain host:port [connectTimeoutSeconds]");
+            System.exit(2);
+        }
+        final InetSocketAddress coordinator = new InetSocketAddress(args[0].substring(0, colon), Integer.parseInt(args[0].substring(colon + 1)));
+        final int timeout = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CONNECT_TIMEOUT;
+        final String token = Coordinator.configuredToken();
+        if (token == null) {
+            System.err.format("no token of the run, set -D%s or %s%n", Coordinator.TOKEN_PROPERTY, Coordinator.TOKEN_ENVIRONMENT);
+            System.exit(2);
+        }
+        try (Socket socket = connect(coordinator, timeout)) {
+            socket.setTcpNoDelay(true);
+            final BufferedOutputStream output = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            final DataOutputStream hello = new DataOutputStream(output);
+            hello.writeByte(LaneProtocol.HELLO);
+            hello.writeUTF(token);
+            hello.flush();
+            ForkedLaneMain.serve(new BufferedInputStream(socket.getInputStream(), 64 * 1024), output);
+        }
+        System.exit(0);
+    }
+
+    private static Socket connect(InetSocketAddress coordinator, int timeoutSeconds) throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (true) {
+            final Socket socket = new Socket();
+            try {
+                socket.connect(coordinator, (int) TimeUnit.SECONDS.toMillis(timeoutSeconds));
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                // the coordinator has not started its run yet
+                Thread.sleep(500);
+            }
+        }
+    }
+}
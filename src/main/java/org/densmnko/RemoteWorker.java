@@ -0,0 +1,123 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Worker JVM connected to the {@link Coordinator}, see {@link ParallelWorkerMain}. Runs classes of any lane over the
+ * same {@link LaneProtocol} a {@link ForkedLane} uses over stdin/stdout. A worker which is lost in the middle of a
+ * class fails that class and gets no more classes.
+ */
+class RemoteWorker implements OutOfProcessLane {
+
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+
+    private final Socket socket;
+    private final String name;
+    private final DataInputStream in;
+    private final DataOutputStream commands;
+    private final LaneProtocol.EventReader reader;
+    private volatile boolean lost;
+
+    RemoteWorker(Socket socket) throws IOException {
+        this.socket = socket;
+        this.name = String.valueOf(socket.getRemoteSocketAddress());
+        socket.setTcpNoDelay(true);
+        commands = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        reader = new LaneProtocol.EventReader(in);
+    }
+
+    /**
+     * Reads the <code>HELLO</code> frame of the worker, waiting for it a few seconds at most.
+     *
+     * @return <code>true</code> if the worker knows the token of the run
+     */
+    boolean handshake(String token) {
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            if (in.readByte() != LaneProtocol.HELLO) {
+                return false;
+            }
+            final String presented = in.readUTF();
+            socket.setSoTimeout(0);
+            return MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isLost() {
+        return lost;
+    }
+
+    @Override
+    public synchronized void run(Runner runner, RunNotifier notifier) {
+        final Description description = runner.getDescription();
+        final Class<?> testClass = description.getTestClass();
+        if (testClass == null) {
+            notifier.fireTestFailure(new Failure(description,
+                    new IllegalArgumentException("only test class runners can run on a remote worker: " + runner)));
+            return;
+        }
+        try {
+            LaneProtocol.writeRun(commands, description);
+            if (!reader.replay(description, notifier, System.out)) {
+                notifier.fireTestFailure(new Failure(description, new IllegalStateException(
+                        String.format("remote worker %s disconnected while running %s", name, testClass.getName()))));
+                kill();
+            }
+        } catch (IOException e) {
+            notifier.fireTestFailure(new Failure(description, e));
+            kill();
+        } catch (StoppedByUserException e) {
+            // the run is stopped in the middle of the class, the rest of its events would desync the stream
+            kill();
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the connection without waiting for the class running on it, the worker exits when it notices.
+     */
+    void kill() {
+        lost = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * Lets the worker exit.
+     */
+    @Override
+    public synchronized void close() {
+        if (!lost) {
+            try {
+                commands.writeByte(LaneProtocol.QUIT);
+                commands.flush();
+            } catch (IOException e) {
+                // the worker is gone already
+            }
+        }
+        kill();
+    }
+}
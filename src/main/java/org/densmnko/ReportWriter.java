@@ -0,0 +1,451 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes a JUnit XML report per test class and a JSONL stream of all events of the run while it goes on. Lanes only
+ * add recorded events to a lock-free queue; a single writer thread turns them into files through buffered file
+ * channels, so neither lanes nor the replay into the notifier ever wait on report I/O.
+ * The XML report of a class is rewritten whenever a run of it finishes, method shards of a class end up in one report.
+ * Tests which passed on retry, see {@link FlakyRetry}, are reported with <code>flakyFailure</code> elements.
+ */
+class ReportWriter {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Entry CLOSE = new Entry(-1, null, null, null);
+
+    private final File directory;
+    private final PrintStream systemErr;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+    private volatile boolean waiting;
+
+    // owned by the writer thread
+    private final Map<String, ClassReport> classes = new HashMap<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel events;
+    private boolean failed;
+
+    private static class Entry {
+        final int lane;
+        final String className;
+        final ParallelSuiteRunner.RunNotifierRecorder.Method method;
+        final Object parameter;
+        final long nanos = System.nanoTime();
+
+        /**
+         * @param method recorded event, or <code>null</code> for a {@link FlakyRetry.Outcome} in
+         *               <code>parameter</code> or, without one, when a run of the class is over
+         */
+        Entry(int lane, String className, ParallelSuiteRunner.RunNotifierRecorder.Method method, Object parameter) {
+            this.lane = lane;
+            this.className = className;
+            this.method = method;
+            this.parameter = parameter;
+        }
+    }
+
+    private static class ClassReport {
+        final String name;
+        final long firstNanos;
+        long lastNanos;
+        boolean dirty;
+        final Map<Description, TestCase> tests = new LinkedHashMap<>();
+
+        ClassReport(String name, long firstNanos) {
+            this.name = name;
+            this.firstNanos = firstNanos;
+            this.lastNanos = firstNanos;
+        }
+
+        TestCase test(Description description) {
+            return tests.computeIfAbsent(description, TestCase::new);
+        }
+    }
+
+    private static class TestCase {
+        final Description description;
+        long startNanos = -1;
+        long nanos;
+        Failure failure;
+        String skipped;
+        // failures of a test which passed on retry, failures of retries of a test which did not
+        final List<Failure> flakyFailures = new ArrayList<>();
+        final List<Failure> rerunFailures = new ArrayList<>();
+
+        TestCase(Description description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * Starts the writer thread, reports go to <code>directory</code>.
+     */
+    ReportWriter(File directory, PrintStream systemErr) {
+        this.directory = directory;
+        this.systemErr = systemErr;
+        thread = new Thread(this::write, "parallel-runner-reports");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static File directory() {
+        return new File(TimingStore.directory(), "reports");
+    }
+
+    /**
+     * Queues an event recorded for the class in the lane, never blocks.
+     */
+    void record(int lane, Description testClass, ParallelSuiteRunner.RunNotifierRecorder.Event event) {
+        if (event.method != null) {
+            offer(new Entry(lane, testClass.getDisplayName(), event.method, event.parameter));
+        }
+    }
+
+    /**
+     * Queues the outcome of retrying a failed test of the class.
+     */
+    void retried(int lane, Description testClass, FlakyRetry.Outcome outcome) {
+        offer(new Entry(lane, testClass.getDisplayName(), null, outcome));
+    }
+
+    /**
+     * Queues the end of a run of the class, its XML report is written then.
+     */
+    void classFinished(int lane, Description testClass) {
+        offer(new Entry(lane, testClass.getDisplayName(), null, null));
+    }
+
+    private void offer(Entry entry) {
+        queue.offer(entry);
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void write() {
+        directory.mkdirs();
+        // reports of the previous run, some of its classes may be gone
+        final File[] previous = directory.listFiles((dir, name) -> name.startsWith("TEST-") && name.endsWith(".xml"));
+        if (previous != null) {
+            for (File file : previous) {
+                file.delete();
+            }
+        }
+        try {
+            while (true) {
+                Entry entry = queue.poll();
+                if (entry == null) {
+                    // going idle, get what is buffered to the disk first
+                    flush();
+                    waiting = true;
+                    if ((entry = queue.poll()) == null) {
+                        LockSupport.park(this);
+                        waiting = false;
+                        continue;
+                    }
+                    waiting = false;
+                }
+                if (entry == CLOSE) {
+                    break;
+                }
+                handle(entry);
+            }
+            for (ClassReport report : classes.values()) {
+                if (report.dirty) {
+                    writeXml(report);
+                }
+            }
+            flush();
+        } finally {
+            if (events != null) {
+                try {
+                    events.close();
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        }
+    }
+
+    private void handle(Entry entry) {
+        ClassReport report = classes.get(entry.className);
+        if (report == null) {
+            report = new ClassReport(entry.className, entry.nanos);
+            classes.put(entry.className, report);
+        }
+        if (entry.parameter instanceof FlakyRetry.Outcome) {
+            retried(report, entry);
+            return;
+        }
+        report.lastNanos = entry.nanos;
+        if (entry.method == null) {
+            writeXml(report);
+            return;
+        }
+        report.dirty = true;
+        writeJson(entry);
+        switch (entry.method) {
+            case fireTestStarted:
+                report.test((Description) entry.parameter).startNanos = entry.nanos;
+                break;
+            case fireTestFinished: {
+                final TestCase test = report.test((Description) entry.parameter);
+                test.nanos = test.startNanos < 0 ? 0 : entry.nanos - test.startNanos;
+                break;
+            }
+            case fireTestFailure:
+                report.test(((Failure) entry.parameter).getDescription()).failure = (Failure) entry.parameter;
+                break;
+            case fireTestAssumptionFailed: {
+                final Failure failure = (Failure) entry.parameter;
+                report.test(failure.getDescription()).skipped = String.valueOf(failure.getMessage());
+                break;
+            }
+            case fireTestIgnored:
+                report.test((Description) entry.parameter).skipped = "";
+                break;
+            default:
+                // suite and run events are not part of the XML report
+        }
+    }
+
+    private void retried(ClassReport report, Entry entry) {
+        final FlakyRetry.Outcome outcome = (FlakyRetry.Outcome) entry.parameter;
+        report.dirty = true;
+        final TestCase test = report.test(outcome.test);
+        if (outcome.passed) {
+            test.flakyFailures.add(outcome.failure);
+            test.flakyFailures.addAll(outcome.retryFailures);
+            test.failure = null;
+        } else {
+            test.rerunFailures.addAll(outcome.retryFailures);
+        }
+        append(String.format(Locale.ROOT,
+                "{\"elapsedMillis\": %d, \"lane\": %d, \"event\": \"testRetried\", \"class\": \"%s\", \"test\": \"%s\", \"attempts\": %d, \"passed\": %b}%n",
+                TimeUnit.NANOSECONDS.toMillis(entry.nanos - startNanos), entry.lane, RunMetrics.escape(entry.className),
+                RunMetrics.escape(String.valueOf(outcome.test.getMethodName())), outcome.attempts, outcome.passed)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeJson(Entry entry) {
+        final StringBuilder json = new StringBuilder(128);
+        json.append("{\"elapsedMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(entry.nanos - startNanos))
+                .append(", \"lane\": ").append(entry.lane)
+                .append(", \"event\": \"").append(eventName(entry.method))
+                .append("\", \"class\": \"").append(RunMetrics.escape(entry.className)).append('"');
+        final Description description = entry.parameter instanceof Failure ? ((Failure) entry.parameter).getDescription()
+                : entry.parameter instanceof Description ? (Description) entry.parameter : null;
+        if (description != null && description.getMethodName() != null) {
+            json.append(", \"test\": \"").append(RunMetrics.escape(description.getMethodName())).append('"');
+        }
+        if (entry.parameter instanceof Failure) {
+            final Throwable exception = ((Failure) entry.parameter).getException();
+            json.append(", \"exception\": \"").append(RunMetrics.escape(exception == null ? "" : LaneProtocol.className(exception)))
+                    .append("\", \"message\": \"").append(RunMetrics.escape(String.valueOf(((Failure) entry.parameter).getMessage())))
+                    .append('"');
+        }
+        json.append("}\n");
+        append(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return <code>testStarted</code> for <code>fireTestStarted</code> and so on
+     */
+    private static String eventName(ParallelSuiteRunner.RunNotifierRecorder.Method method) {
+        final String name = method.name();
+        return name.startsWith("fire") ? Character.toLowerCase(name.charAt(4)) + name.substring(5) : name;
+    }
+
+    private void writeXml(ClassReport report) {
+        report.dirty = false;
+        int failures = 0;
+        int errors = 0;
+        int skipped = 0;
+        for (TestCase test : report.tests.values()) {
+            if (test.failure != null) {
+                if (test.failure.getException() instanceof AssertionError) {
+                    failures++;
+                } else {
+                    errors++;
+                }
+            } else if (test.skipped != null) {
+                skipped++;
+            }
+        }
+        final SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT);
+        timestamp.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final StringBuilder xml = new StringBuilder(1024);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append(String.format(Locale.ROOT, "<testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"%d\" skipped=\"%d\" time=\"%s\" timestamp=\"%s\">%n",
+                escapeXml(report.name), report.tests.size(), failures, errors, skipped, seconds(report.lastNanos - report.firstNanos),
+                timestamp.format(new Date(startMillis + TimeUnit.NANOSECONDS.toMillis(report.firstNanos - startNanos)))));
+        for (TestCase test : report.tests.values()) {
+            final Description description = test.description;
+            xml.append(String.format(Locale.ROOT, "  <testcase name=\"%s\" classname=\"%s\" time=\"%s\"",
+                    escapeXml(description.getMethodName() != null ? description.getMethodName() : description.getDisplayName()),
+                    escapeXml(description.getClassName()), seconds(test.nanos)));
+            if (test.failure == null && test.skipped == null && test.flakyFailures.isEmpty()) {
+                xml.append("/>\n");
+                continue;
+            }
+            xml.append(">\n");
+            if (test.failure != null) {
+                appendFailure(xml, test.failure.getException() instanceof AssertionError ? "failure" : "error", test.failure);
+                test.rerunFailures.forEach(failure -> appendFailure(xml, "rerunFailure", failure));
+            } else if (test.skipped != null) {
+                xml.append("    <skipped");
+                if (!test.skipped.isEmpty()) {
+                    xml.append(" message=\"").append(escapeXml(test.skipped)).append('"');
+                }
+                xml.append("/>\n");
+            }
+            test.flakyFailures.forEach(failure -> appendFailure(xml, "flakyFailure", failure));
+            xml.append("  </testcase>\n");
+        }
+        xml.append("</testsuite>\n");
+        final File file = new File(directory, "TEST-" + report.name.replaceAll("[^A-Za-z0-9._$-]", "_") + ".xml");
+        if (failed) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer bytes = ByteBuffer.wrap(xml.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private static void appendFailure(StringBuilder xml, String element, Failure failure) {
+        final Throwable exception = failure.getException();
+        xml.append("    <").append(element)
+                .append(" message=\"").append(escapeXml(String.valueOf(failure.getMessage())))
+                .append("\" type=\"").append(escapeXml(exception == null ? "" : LaneProtocol.className(exception))).append("\">")
+                .append(escapeXml(failure.getTrace()))
+                .append("</").append(element).append(">\n");
+    }
+
+    private void append(byte[] bytes) {
+        if (failed) {
+            return;
+        }
+        if (buffer.remaining() < bytes.length) {
+            flush();
+        }
+        if (bytes.length > buffer.capacity()) {
+            write(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    private void flush() {
+        if (buffer.position() > 0) {
+            // through Buffer, as ByteBuffer.flip and clear of Java 9+ are missing on Java 8
+            ((Buffer) buffer).flip();
+            write(buffer);
+            ((Buffer) buffer).clear();
+        }
+    }
+
+    private void write(ByteBuffer bytes) {
+        if (failed) {
+            return;
+        }
+        try {
+            if (events == null) {
+                events = FileChannel.open(new File(directory, "events.jsonl").toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            while (bytes.hasRemaining()) {
+                events.write(bytes);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(IOException e) {
+        if (!failed) {
+            failed = true;
+            systemErr.println("unable to write reports to " + directory + ": " + e);
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e9);
+    }
+
+    static String escapeXml(String s) {
+        final StringBuilder escaped = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    // characters XML 1.0 does not allow at all
+                    escaped.append(c < 0x20 && c != '\t' && c != '\n' && c != '\r' ? '?' : c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Writes what is left and waits for the writer thread to close the files.
+     */
+    void close() {
+        offer(CLOSE);
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Resources a test class locks with {@link ResourceLock}, and the table of locks held by running classes.
+ * Annotations are matched by type name, so they are read the same whichever class loader a lane got them from.
+ */
+final class ResourceClaims {
+
+    static final ResourceClaims NONE = new ResourceClaims(new String[0], new String[0]);
+
+    private static final String LOCK = ResourceLock.class.getName();
+    private static final String LOCKS = ResourceLock.List.class.getName();
+
+    private final String[] reads;
+    private final String[] writes;
+
+    private ResourceClaims(String[] reads, String[] writes) {
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    boolean isEmpty() {
+        return reads.length == 0 && writes.length == 0;
+    }
+
+    /**
+     * @return locks of the test classes of the description tree
+     */
+    static ResourceClaims of(Description description) {
+        final Set<String> reads = new TreeSet<>();
+        final Set<String> writes = new TreeSet<>();
+        collect(description, reads, writes);
+        if (reads.isEmpty() && writes.isEmpty()) {
+            return NONE;
+        }
+        reads.removeAll(writes);
+        return new ResourceClaims(reads.toArray(new String[0]), writes.toArray(new String[0]));
+    }
+
+    private static void collect(Description description, Set<String> reads, Set<String> writes) {
+        final Class<?> testClass = description.getTestClass();
+        if (testClass != null) {
+            for (Annotation annotation : testClass.getAnnotations()) {
+                final String type = annotation.annotationType().getName();
+                if (type.equals(LOCK)) {
+                    add(annotation, reads, writes);
+                } else if (type.equals(LOCKS)) {
+                    for (Object lock : (Object[]) attribute(annotation, "value")) {
+                        add((Annotation) lock, reads, writes);
+                    }
+                }
+            }
+        }
+        for (Description child : description.getChildren()) {
+            if (!child.isTest()) {
+                collect(child, reads, writes);
+            }
+        }
+    }
+
+    private static void add(Annotation lock, Set<String> reads, Set<String> writes) {
+        final String name = (String) attribute(lock, "value");
+        if (ResourceLock.Mode.READ.name().equals(((Enum<?>) attribute(lock, "mode")).name())) {
+            reads.add(name);
+        } else {
+            writes.add(name);
+        }
+    }
+
+    private static Object attribute(Annotation annotation, String name) {
+        try {
+            return annotation.annotationType().getMethod(name).invoke(annotation);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(String.format("unable to read %s of %s", name, annotation), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("read %s, write %s", String.join(",", reads), String.join(",", writes));
+    }
+
+    /**
+     * Locks held by running classes. Not thread safe, guarded by the scheduler.
+     */
+    static class Table {
+        private final Map<String, Integer> readers = new HashMap<>();
+        private final Set<String> writers = new TreeSet<>();
+
+        /**
+         * Takes all locks of the claims, or none of them.
+         */
+        boolean tryAcquire(ResourceClaims claims) {
+            for (String write : claims.writes) {
+                if (writers.contains(write) || readers.containsKey(write)) {
+                    return false;
+                }
+            }
+            for (String read : claims.reads) {
+                if (writers.contains(read)) {
+                    return false;
+                }
+            }
+            for (String write : claims.writes) {
+                writers.add(write);
+            }
+            for (String read : claims.reads) {
+                readers.merge(read, 1, Integer::sum);
+            }
+            return true;
+        }
+
+        void release(ResourceClaims claims) {
+            for (String write : claims.writes) {
+                writers.remove(write);
+            }
+            for (String read : claims.reads) {
+                readers.computeIfPresent(read, (name, count) -> count == 1 ? null : count - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.densmnko;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a resource shared by test classes, e.g. a database schema or a fixed port. Classes whose locks conflict
+ * never run at the same time, whatever lanes they are listed in: a lane which is free takes the next queued class
+ * it can lock, from its own queue first, then from the other lanes.
+ * <pre>
+ * &#64;ResourceLock("db")
+ * &#64;ResourceLock(value = "port-8080", mode = ResourceLock.Mode.READ)
+ * public class OrderRepositoryTest { ... }
+ * </pre>
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(ResourceLock.List.class)
+public @interface ResourceLock {
+
+    /**
+     * Name of the resource.
+     */
+    String value();
+
+    Mode mode() default Mode.READ_WRITE;
+
+    enum Mode {
+        /**
+         * Shared with other readers.
+         */
+        READ,
+        /**
+         * Exclusive.
+         */
+        READ_WRITE
+    }
+
+    @Documented
+    @Inherited
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface List {
+        ResourceLock[] value();
+    }
+}
@@ -0,0 +1,144 @@
+package org.densmnko;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-lane and per-class execution metrics of a run, emitted as JFR events while running (see {@link JfrEvents}) and
+ * as a JSON summary at the end, to find stragglers and tune lane layout.
+ */
+class RunMetrics {
+
+    static final String METRICS_PROPERTY = "parallel-runner.metrics";
+
+    static class ClassMetrics {
+        final int lane;
+        final String className;
+        final long queueWaitNanos;
+        final long runNanos;
+        final long replayBlockedNanos;
+        final long outputBytes;
+        final long classesLoaded;
+        final long classLoadingNanos;
+
+        ClassMetrics(int lane, String className, long queueWaitNanos, long runNanos, long replayBlockedNanos,
+                     long outputBytes, long classesLoaded, long classLoadingNanos) {
+            this.lane = lane;
+            this.className = className;
+            this.queueWaitNanos = queueWaitNanos;
+            this.runNanos = runNanos;
+            this.replayBlockedNanos = replayBlockedNanos;
+            this.outputBytes = outputBytes;
+            this.classesLoaded = classesLoaded;
+            this.classLoadingNanos = classLoadingNanos;
+        }
+    }
+
+    private final int lanes;
+    private final List<ClassMetrics> classes = new ArrayList<>();
+    private long startNanos;
+    private long wallNanos;
+
+    RunMetrics(int lanes) {
+        this.lanes = lanes;
+    }
+
+    synchronized void started() {
+        classes.clear();
+        startNanos = System.nanoTime();
+    }
+
+    synchronized void finished() {
+        wallNanos = System.nanoTime() - startNanos;
+        final long[] busy = new long[lanes];
+        for (ClassMetrics c : classes) {
+            busy[c.lane] += c.runNanos + c.replayBlockedNanos;
+        }
+        for (int lane = 0; lane < lanes; lane++) {
+            JfrEvents.laneFinished(lane, busy[lane], Math.max(0, wallNanos - busy[lane]));
+        }
+    }
+
+    synchronized void classFinished(ClassMetrics metrics) {
+        classes.add(metrics);
+        JfrEvents.classFinished(metrics);
+    }
+
+    synchronized String toJson() {
+        final long[] busy = new long[lanes];
+        final long[] replayBlocked = new long[lanes];
+        final long[] queueWait = new long[lanes];
+        final long[] output = new long[lanes];
+        final long[] loaded = new long[lanes];
+        final long[] loading = new long[lanes];
+        final int[] count = new int[lanes];
+        for (ClassMetrics c : classes) {
+            busy[c.lane] += c.runNanos + c.replayBlockedNanos;
+            replayBlocked[c.lane] += c.replayBlockedNanos;
+            queueWait[c.lane] += c.queueWaitNanos;
+            output[c.lane] += c.outputBytes;
+            loaded[c.lane] += c.classesLoaded;
+            loading[c.lane] += c.classLoadingNanos;
+            count[c.lane]++;
+        }
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n  \"wallMillis\": ").append(millis(wallNanos)).append(",\n  \"lanes\": [");
+        for (int lane = 0; lane < lanes; lane++) {
+            json.append(lane == 0 ? "\n" : ",\n");
+            json.append(String.format(Locale.ROOT,
+                    "    {\"lane\": %d, \"classes\": %d, \"busyMillis\": %d, \"idleMillis\": %d, \"queueWaitMillis\": %d, "
+                            + "\"replayBlockedMillis\": %d, \"classesLoaded\": %d, \"classLoadingMillis\": %d, \"outputBytes\": %d}",
+                    lane, count[lane], millis(busy[lane]), millis(Math.max(0, wallNanos - busy[lane])), millis(queueWait[lane]),
+                    millis(replayBlocked[lane]), loaded[lane], millis(loading[lane]), output[lane]));
+        }
+        json.append("\n  ],\n  \"classes\": [");
+        for (int i = 0; i < classes.size(); i++) {
+            final ClassMetrics c = classes.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append(String.format(Locale.ROOT,
+                    "    {\"class\": \"%s\", \"lane\": %d, \"queueWaitMillis\": %d, \"runMillis\": %d, \"replayBlockedMillis\": %d, "
+                            + "\"classesLoaded\": %d, \"classLoadingMillis\": %d, \"outputBytes\": %d}",
+                    escape(c.className), c.lane, millis(c.queueWaitNanos), millis(c.runNanos), millis(c.replayBlockedNanos),
+                    c.classesLoaded, millis(c.classLoadingNanos), c.outputBytes));
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    void save() {
+        final File file = new File(TimingStore.directory(), "metrics.json");
+        file.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        } catch (IOException e) {
+            System.err.println("unable to save metrics to " + file + ": " + e);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    static String escape(String s) {
+        final StringBuilder escaped = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -1,82 +1,236 @@
 package org.densmnko;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Demultiplexes <code>System.out</code> and, through {@link #err()}, <code>System.err</code> into per-lane buffers.
+ * Lanes never share a buffer, so threads of different lanes do not block each other.
+ */
 public class RunnerOutputStream extends OutputStream {
 
-    private final ByteArrayOutputStream general = new ByteArrayOutputStream();
-    private final Map<ParallelRunnerClassLoader, ByteArrayOutputStream> streams = new ConcurrentHashMap<>();
+    /**
+     * Output and error buffers of a lane, or of a pinned test.
+     */
+    static class Lane {
+        final LaneBuffer out = new LaneBuffer();
+        final LaneBuffer err = new LaneBuffer();
+        // set once the class loader of the lane is forgotten, threads still bound to it look their lane up again
+        volatile boolean forgotten;
+    }
 
-    @Override
-    public void write(byte[] b) throws IOException {
-        final ParallelRunnerClassLoader cl = getContext();
-        if (cl != null) {
-            streams.computeIfAbsent(cl, t -> new ByteArrayOutputStream()).write(b);
-        } else {
-            general.write(b);
+    private final Lane general = new Lane();
+    private final Map<ParallelRunnerClassLoader, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Lane of the thread, valid while the thread keeps the same context class loader. Pooled threads keep their
+     * binding, so it holds the class loader weakly.
+     */
+    private final ThreadLocal<Binding> bindings = ThreadLocal.withInitial(Binding::new);
+
+    /**
+     * Lane bound to the thread running a test class, inherited by threads the test starts. Threads which are
+     * not bound find their lane by their context class loader.
+     */
+    private final InheritableThreadLocal<Lane> bound = new InheritableThreadLocal<>();
+
+    /**
+     * Buffers pinned to a single test, inherited by threads the test starts.
+     */
+    private final InheritableThreadLocal<Lane> pinned = new InheritableThreadLocal<>();
+
+    private final OutputStream err = new OutputStream() {
+        @Override
+        public void write(int b) {
+            lane().err.write(b);
         }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            lane().err.write(b, off, len);
+        }
+    };
+
+    private static class Binding {
+        WeakReference<ClassLoader> loader;
+        Lane lane;
     }
 
     @Override
-    public void write(byte[] b, int off, int len) throws IOException {
-        final ParallelRunnerClassLoader cl = getContext();
-        if (cl != null) {
-            streams.computeIfAbsent(cl, t -> new ByteArrayOutputStream()).write(b, off, len);
-        } else {
-            general.write(b, off, len);
-        }
+    public void write(byte[] b) {
+        lane().out.write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        lane().out.write(b, off, len);
     }
 
     @Override
-    public void write(int b) throws IOException {
-        final ParallelRunnerClassLoader cl = getContext();
-        if (cl != null) {
-            streams.computeIfAbsent(cl, t -> new ByteArrayOutputStream()).write(b);
+    public void write(int b) {
+        lane().out.write(b);
+    }
+
+    /**
+     * @return stream for <code>System.err</code>, demultiplexed the same way
+     */
+    OutputStream err() {
+        return err;
+    }
+
+    /**
+     * Captures output of the current thread and threads it starts into the buffers of the lane.
+     */
+    void bind(ParallelRunnerClassLoader lane) {
+        bound.set(lanes.computeIfAbsent(lane, l -> new Lane()));
+    }
+
+    void unbind() {
+        bound.remove();
+    }
+
+    /**
+     * @return lane bound to the current thread, <code>null</code> if there is none
+     */
+    Lane boundLane() {
+        return bound.get();
+    }
+
+    /**
+     * Binds a pooled thread to the lane it works for, or unbinds it, dropping the lane and pinned buffers it
+     * inherited from the thread which happened to start it.
+     */
+    void rebind(Lane lane) {
+        pinned.remove();
+        if (lane == null) {
+            bound.remove();
         } else {
-            general.write(b);
+            bound.set(lane);
         }
     }
 
-    public String getAndReset(Thread thread) {
-        final ByteArrayOutputStream baos = streams.get(getContext(thread.getContextClassLoader()));
-        if (baos != null) {
-            // using default system encoding
-            final String output = baos.toString();
-            baos.reset();
-            return output;
-        } else {
-            return null;
+    /**
+     * Captures output of the current thread and threads it starts into buffers of its own, instead of its lane.
+     */
+    void pin() {
+        pinned.set(new Lane());
+    }
+
+    /**
+     * Moves output left in the pinned buffers to the lane.
+     */
+    void unpin() {
+        final Lane lane = pinned.get();
+        pinned.remove();
+        if (lane != null) {
+            ParallelSuiteRunner.writeSystemOut(lane.out.drain(), this);
+            ParallelSuiteRunner.writeSystemOut(lane.err.drain(), err);
         }
     }
 
-    public String getAndResetGeneral() {
-            final String output = general.toString();
-            general.reset();
-            return output;
+    /**
+     * Drops the buffers of a class loader which is not used any more, so they do not keep it reachable. Output
+     * left in them goes to the general buffers, so does later output of threads which still use the loader.
+     */
+    void forget(ParallelRunnerClassLoader loader) {
+        final Lane lane = lanes.remove(loader);
+        if (lane != null) {
+            lane.forgotten = true;
+            ParallelSuiteRunner.writeSystemOut(lane.out.drain(), into(general.out));
+            ParallelSuiteRunner.writeSystemOut(lane.err.drain(), into(general.err));
+        }
+    }
 
+    /**
+     * @return output of the current thread: its pinned buffer, or its lane
+     */
+    public CapturedOutput getAndReset() {
+        final Lane lane = pinned.get();
+        return lane != null ? lane.out.drain() : getAndReset(Thread.currentThread());
     }
 
-    private ParallelRunnerClassLoader getContext() {
-        return getContext(Thread.currentThread().getContextClassLoader());
+    /**
+     * @return error output of the current thread: its pinned buffer, or its lane
+     */
+    public CapturedOutput getAndResetErr() {
+        final Lane lane = pinned.get();
+        return lane != null ? lane.err.drain() : getAndResetErr(Thread.currentThread());
     }
 
-    private ParallelRunnerClassLoader getContext(ClassLoader loader) {
-        if (loader instanceof ParallelRunnerClassLoader) {
-            return (ParallelRunnerClassLoader) loader;
-        } else {
-            ClassLoader parent = loader.getParent();
-            if (parent != null) {
-                return getContext(parent);
-            } else {
-                return null;
+    public CapturedOutput getAndReset(Thread thread) {
+        final Lane lane = laneOf(thread);
+        return lane != null ? lane.out.drain() : CapturedOutput.EMPTY;
+    }
+
+    public CapturedOutput getAndResetErr(Thread thread) {
+        final Lane lane = laneOf(thread);
+        return lane != null ? lane.err.drain() : CapturedOutput.EMPTY;
+    }
+
+    public CapturedOutput getAndResetGeneral() {
+        return general.out.drain();
+    }
+
+    public CapturedOutput getAndResetGeneralErr() {
+        return general.err.drain();
+    }
+
+    private Lane laneOf(Thread thread) {
+        if (thread == Thread.currentThread()) {
+            final Lane ownLane = pinned.get() != null ? pinned.get() : bound.get();
+            if (ownLane != null) {
+                return ownLane;
             }
         }
+        final ParallelRunnerClassLoader cl = getContext(thread.getContextClassLoader());
+        return cl == null ? null : lanes.get(cl);
+    }
+
+    private Lane lane() {
+        final Lane pinnedLane = pinned.get();
+        if (pinnedLane != null) {
+            return pinnedLane;
+        }
+        final Lane boundLane = bound.get();
+        if (boundLane != null) {
+            return boundLane;
+        }
+        final Binding binding = bindings.get();
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (binding.lane == null || binding.lane.forgotten || binding.loader.get() != loader) {
+            final ParallelRunnerClassLoader cl = getContext(loader);
+            // lanes are created by bind(), a loader without one is not running a class or is forgotten
+            final Lane lane = cl != null ? lanes.get(cl) : null;
+            binding.loader = new WeakReference<>(loader);
+            binding.lane = lane != null ? lane : general;
+        }
+        return binding.lane;
     }
 
+    private static OutputStream into(LaneBuffer buffer) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                buffer.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                buffer.write(b, off, len);
+            }
+        };
+    }
 
+    private ParallelRunnerClassLoader getContext(ClassLoader loader) {
+        if (loader == null) {
+            return null;
+        } else if (loader instanceof ParallelRunnerClassLoader) {
+            return (ParallelRunnerClassLoader) loader;
+        } else {
+            return getContext(loader.getParent());
+        }
+    }
 
 }
@@ -0,0 +1,86 @@
+package org.densmnko;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-class durations of previous runs, kept in a small properties file under {@link #directory()}, or only in memory
+ * for runs which do not order classes by duration.
+ */
+class TimingStore {
+
+    static final String DIRECTORY_PROPERTY = "parallel-runner.dir";
+
+    private final File file;
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    /**
+     * @param file properties file to load durations from and save them to, <code>null</code> for none
+     */
+    TimingStore(File file) {
+        this.file = file;
+        if (file != null && file.isFile()) {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                // no history, every class gets the same estimate
+                return;
+            }
+            properties.stringPropertyNames().forEach(name -> {
+                try {
+                    durations.put(name, Long.parseLong(properties.getProperty(name)));
+                } catch (NumberFormatException e) {
+                    // ignore broken entry
+                }
+            });
+        }
+    }
+
+    static TimingStore load() {
+        return new TimingStore(new File(directory(), "timings.properties"));
+    }
+
+    static File directory() {
+        return new File(System.getProperty(DIRECTORY_PROPERTY, "target/parallel-runner"));
+    }
+
+    /**
+     * @return duration in millis, or <code>-1</code> if the class never ran
+     */
+    long duration(String className) {
+        final Long duration = durations.get(className);
+        return duration == null ? -1 : duration;
+    }
+
+    /**
+     * Records duration of a finished class, smoothed with the previous value.
+     */
+    void record(String className, long millis) {
+        durations.merge(className, millis, (previous, current) -> (previous + current) / 2);
+    }
+
+    void save() {
+        if (file == null) {
+            return;
+        }
+        final Properties properties = new Properties();
+        durations.forEach((name, millis) -> properties.setProperty(name, Long.toString(millis)));
+        final File dir = file.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "junit4-parallel-runner class durations, millis");
+        } catch (IOException e) {
+            System.err.println("unable to save timings to " + file + ": " + e);
+        }
+    }
+}
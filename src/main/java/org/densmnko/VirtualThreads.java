@@ -0,0 +1,43 @@
+package org.densmnko;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads of Java 21+, reached by reflection so the runner still builds and runs on Java 8.
+ */
+final class VirtualThreads {
+
+    private static final ThreadFactory FACTORY = lookup();
+
+    private VirtualThreads() {
+    }
+
+    private static ThreadFactory lookup() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Method name = builderClass.getMethod("name", String.class, long.class);
+            final Object named = name.invoke(builder, "runner-virtual-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(named);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // before Java 21, or a preview feature not enabled
+            return null;
+        }
+    }
+
+    static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    /**
+     * @return factory of virtual threads named <code>runner-virtual-N</code>
+     * @throws IllegalStateException if virtual threads are not available
+     */
+    static ThreadFactory factory() {
+        if (FACTORY == null) {
+            throw new IllegalStateException(String.format("virtual thread lanes need Java 21+, running on %s", System.getProperty("java.version")));
+        }
+        return FACTORY;
+    }
+}
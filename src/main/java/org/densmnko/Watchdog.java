@@ -0,0 +1,128 @@
+package org.densmnko;
+
+import org.junit.runners.model.TestTimedOutException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches lanes of a {@link NaiveScheduler} for test classes and lanes running over their deadlines. A class over its
+ * deadline fails with a dump of the runner threads, its lane goes on with the next class on a new thread. A lane over
+ * its deadline is retired and its queued classes move to the other lanes.
+ */
+public class Watchdog {
+
+    private static final long PERIOD_MILLIS = 100;
+
+    private final int classTimeout;
+    private final int laneTimeout;
+    private Thread thread;
+
+    /**
+     * @param classTimeout seconds a test class may run, zero for no limit
+     * @param laneTimeout  seconds a lane may run, zero for no limit
+     */
+    public Watchdog(int classTimeout, int laneTimeout) {
+        this.classTimeout = classTimeout;
+        this.laneTimeout = laneTimeout;
+    }
+
+    synchronized void start(NaiveScheduler scheduler, int lanes) {
+        thread = new Thread(() -> watch(scheduler, lanes), "parallel-runner-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void watch(NaiveScheduler scheduler, int lanes) {
+        final long started = System.nanoTime();
+        final long classNanos = TimeUnit.SECONDS.toNanos(classTimeout);
+        final long laneNanos = TimeUnit.SECONDS.toNanos(laneTimeout);
+        final boolean[] expired = new boolean[lanes];
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                TimeUnit.MILLISECONDS.sleep(PERIOD_MILLIS);
+                final long now = System.nanoTime();
+                for (int lane = 0; lane < lanes; lane++) {
+                    if (laneNanos > 0 && !expired[lane] && now - started > laneNanos && scheduler.isBusy(lane)) {
+                        expired[lane] = true;
+                        scheduler.expire(lane, true, failure(String.format("lane %d did not finish in %d s", lane, laneTimeout), laneTimeout,
+                                scheduler.runningThread(lane)));
+                        continue;
+                    }
+                    final long since = scheduler.runningSince(lane);
+                    if (classNanos > 0 && since != 0 && now - since > classNanos) {
+                        scheduler.expire(lane, false, failure(String.format("lane %d: test class did not finish in %d s", lane, classTimeout), classTimeout,
+                                scheduler.runningThread(lane)));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // run is over
+        }
+    }
+
+    private static Throwable failure(String message, int timeout, Thread running) {
+        final Throwable failure = new TestTimedOutException(timeout, TimeUnit.SECONDS);
+        final Exception dump = new Exception(message + ", runner threads:\n" + threadDump(running));
+        dump.setStackTrace(new StackTraceElement[0]);
+        failure.addSuppressed(dump);
+        return failure;
+    }
+
+    /**
+     * @param running thread of the stuck lane, dumped even if it is a virtual thread, which neither
+     *                {@link Thread#getAllStackTraces()} nor the thread MX bean list; <code>null</code> for none
+     * @return stack traces and locks of threads in the <code>parallel-runner</code> group and of method threads
+     */
+    static String threadDump(Thread running) {
+        final List<Thread> threads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            final ThreadGroup group = thread.getThreadGroup();
+            if (group != null && "parallel-runner".equals(group.getName()) || thread.getName().startsWith("runner-")) {
+                threads.add(thread);
+            }
+        }
+        final long[] ids = new long[threads.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = threads.get(i).getId();
+        }
+        final StringBuilder dump = new StringBuilder();
+        boolean runningDumped = running == null;
+        for (ThreadInfo info : ManagementFactory.getThreadMXBean().getThreadInfo(ids, Integer.MAX_VALUE)) {
+            if (info == null) {
+                continue;
+            }
+            runningDumped = runningDumped || info.getThreadId() == running.getId();
+            dump.append('"').append(info.getThreadName()).append("\" ").append(info.getThreadState());
+            if (info.getLockName() != null) {
+                dump.append(" on ").append(info.getLockName());
+            }
+            if (info.getLockOwnerName() != null) {
+                dump.append(" owned by \"").append(info.getLockOwnerName()).append('"');
+            }
+            dump.append('\n');
+            for (StackTraceElement element : info.getStackTrace()) {
+                dump.append("\tat ").append(element).append('\n');
+            }
+            dump.append('\n');
+        }
+        if (!runningDumped) {
+            dump.append('"').append(running.getName()).append("\" ").append(running.getState()).append('\n');
+            for (StackTraceElement element : running.getStackTrace()) {
+                dump.append("\tat ").append(element).append('\n');
+            }
+            dump.append('\n');
+        }
+        return dump.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package org.densmnko;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link NaiveScheduler} which lets an idle lane take whole test classes from the tail of the busiest lane.
+ * Stolen class is re-materialized in a spare {@link ParallelRunnerClassLoader}, so it never shares static state with
+ * the thief's own classes.
+ */
+public class WorkStealingScheduler extends NaiveScheduler {
+
+    public WorkStealingScheduler(int length, ParallelSuiteRunner parallelSuiteRunner) {
+        super(length, parallelSuiteRunner);
+    }
+
+    public WorkStealingScheduler(int length, ParallelSuiteRunner parallelSuiteRunner, LanePool lanePool) {
+        super(length, parallelSuiteRunner, lanePool);
+    }
+
+    public WorkStealingScheduler(int length, ParallelSuiteRunner parallelSuiteRunner, LanePool lanePool, ThreadFactory threadFactory) {
+        super(length, parallelSuiteRunner, lanePool, threadFactory);
+    }
+
+    @Override
+    protected ParallelSuiteRunner.ParallelRunnable next(int lane) {
+        final ParallelSuiteRunner.ParallelRunnable own = super.next(lane);
+        if (own != null || isLocking()) {
+            // classes with resource locks are already taken from any lane
+            return own;
+        }
+        final ParallelSuiteRunner.ParallelRunnable stolen = steal(lane);
+        if (stolen == null) {
+            // the victims took their last classes meanwhile; a class handed back to this lane is still run by it
+            return super.next(lane);
+        }
+        return parallelSuiteRunner.rematerialize(stolen, lane);
+    }
+
+    private ParallelSuiteRunner.ParallelRunnable steal(int thief) {
+        int victim = -1;
+        int victimSize = 0;
+        for (int i = 0; i < queues.length; i++) {
+            if (i != thief) {
+                final int size = queues[i].size();
+                if (size > victimSize) {
+                    victim = i;
+                    victimSize = size;
+                }
+            }
+        }
+        return victim < 0 ? null : queues[victim].pollLast();
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ClassBytesCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final URL[] classpath = ClassBytesCache.classpath(getClass().getClassLoader());
+
+    @Test
+    public void servesTheBytesTheClassLoaderReads() throws IOException {
+        final ClassBytesCache cache = ClassBytesCache.of(classpath);
+
+        // from a jar of the classpath and from the test classes directory
+        for (Class<?> type : new Class<?>[]{Test.class, Foo.class}) {
+            assertArrayEquals(type.getName(), resource(type), cache.get(type.getName()).bytes);
+        }
+        assertNull(cache.get("org.densmnko.NoSuchClass"));
+    }
+
+    @Test
+    public void releasedCacheIsReplacedByAFreshOne() {
+        final ClassBytesCache cache = ClassBytesCache.of(classpath);
+        assertSame(cache, ClassBytesCache.of(classpath));
+
+        ClassBytesCache.release(classpath);
+
+        assertNotSame(cache, ClassBytesCache.of(classpath));
+    }
+
+    @Test
+    public void cachedClassesKeepThePackageOfTheirJar() throws Exception {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_TITLE, "packaged");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, "1.2.3");
+        final URL[] jar = {jar("packaged.jar", manifest, null)};
+        try {
+            final ParallelRunnerClassLoader loader = new ParallelRunnerClassLoader(0, new URLClassLoader(jar, null),
+                    new String[]{Foo.class.getName()});
+
+            final Class<?> foo = Class.forName(Foo.class.getName(), false, loader);
+
+            assertNotNull(ClassBytesCache.of(jar).get(Foo.class.getName()));
+            assertEquals(1, loader.getDefinedClasses());
+            assertSame(loader, foo.getClassLoader());
+            assertEquals("packaged", foo.getPackage().getImplementationTitle());
+            assertEquals("1.2.3", foo.getPackage().getImplementationVersion());
+        } finally {
+            ClassBytesCache.release(jar);
+        }
+    }
+
+    @Test
+    public void classesOfSignedJarsAreLeftToTheClassLoader() throws Exception {
+        final URL[] jar = {jar("signed.jar", null, "META-INF/SIGNER.SF")};
+        try {
+            final ParallelRunnerClassLoader loader = new ParallelRunnerClassLoader(0, new URLClassLoader(jar, null),
+                    new String[]{Foo.class.getName()});
+
+            final Class<?> foo = Class.forName(Foo.class.getName(), false, loader);
+
+            assertNull(ClassBytesCache.of(jar).get(Foo.class.getName()));
+            assertSame(loader, foo.getClassLoader());
+        } finally {
+            ClassBytesCache.release(jar);
+        }
+    }
+
+    /**
+     * @return jar with {@link Foo}, the manifest if not <code>null</code> and an empty entry if not <code>null</code>
+     */
+    private URL jar(String name, Manifest manifest, String entry) throws IOException {
+        final File file = folder.newFile(name);
+        try (JarOutputStream out = manifest != null
+                ? new JarOutputStream(new FileOutputStream(file), manifest)
+                : new JarOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new JarEntry(Foo.class.getName().replace('.', '/') + ".class"));
+            out.write(resource(Foo.class));
+            if (entry != null) {
+                out.putNextEntry(new JarEntry(entry));
+            }
+        }
+        return file.toURI().toURL();
+    }
+
+    private static byte[] resource(Class<?> type) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+            final byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
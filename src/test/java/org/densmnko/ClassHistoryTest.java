@@ -0,0 +1,71 @@
+package org.densmnko;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassHistoryTest {
+
+    private static final String FAIL_PROPERTY = "class-history-test.fail";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void clearProperty() {
+        System.clearProperty(FAIL_PROPERTY);
+    }
+
+    @Test
+    public void classWhichFailedLastTimeRunsFirst() {
+        System.setProperty(FAIL_PROPERTY, "true");
+        final SuiteRun first = SuiteRun.run(Prioritized.class, folder.getRoot());
+        assertEquals(first.failures.toString(), 1, first.result.getFailureCount());
+        assertEquals(Arrays.asList("First", "Second", "Third"), SuiteRun.notes("order"));
+
+        System.clearProperty(FAIL_PROPERTY);
+        final SuiteRun second = SuiteRun.run(Prioritized.class, folder.getRoot());
+
+        assertTrue(second.failures.toString(), second.result.wasSuccessful());
+        assertEquals(3, SuiteRun.notes("order").size());
+        assertEquals("Third", SuiteRun.notes("order").get(0));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.ClassHistoryTest", prioritize = true, value = {
+            @Suite.SuiteClasses({First.class, Second.class, Third.class})
+    })
+    public static class Prioritized {
+    }
+
+    public static class First {
+        @Test
+        public void first() {
+            SuiteRun.note("order", "First");
+        }
+    }
+
+    public static class Second {
+        @Test
+        public void second() {
+            SuiteRun.note("order", "Second");
+        }
+    }
+
+    public static class Third {
+        @Test
+        public void third() {
+            SuiteRun.note("order", "Third");
+            assertFalse("failed on purpose", Boolean.getBoolean(FAIL_PROPERTY));
+        }
+    }
+}
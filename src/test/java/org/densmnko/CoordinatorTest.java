@@ -0,0 +1,151 @@
+package org.densmnko;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoordinatorTest {
+
+    static final int PORT = 47913;
+    private static final String TOKEN = "coordinator-test-token";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Process worker;
+
+    @After
+    public void stopWorker() {
+        System.clearProperty(Coordinator.TOKEN_PROPERTY);
+        if (worker != null) {
+            worker.destroy();
+        }
+    }
+
+    @Test
+    public void workerWithTheTokenRunsClassesAndOthersAreDropped() throws Exception {
+        System.setProperty(Coordinator.TOKEN_PROPERTY, TOKEN);
+        final File log = folder.newFile("worker.log");
+        worker = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                "-D" + Coordinator.TOKEN_PROPERTY + "=" + TOKEN,
+                ParallelWorkerMain.class.getName(), "localhost:" + PORT, "30")
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        final CompletableFuture<byte[]> intruder = CompletableFuture.supplyAsync(CoordinatorTest::intrude);
+
+        final SuiteRun run = SuiteRun.run(Shared.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(4, run.result.getRunCount());
+        assertTrue("worker did not exit", worker.waitFor(10, TimeUnit.SECONDS));
+        assertEquals(0, worker.exitValue());
+        final Matcher remote = Pattern.compile("running in (\\S+)").matcher(run.out);
+        boolean elsewhere = false;
+        while (remote.find()) {
+            elsewhere |= !remote.group(1).equals(ManagementFactory.getRuntimeMXBean().getName());
+        }
+        assertTrue(run.out, elsewhere);
+        // the connection is closed without a class to run
+        assertArrayEquals(new byte[]{LaneProtocol.QUIT}, intruder.get(10, TimeUnit.SECONDS));
+        assertTrue(run.err, run.err.contains("is not a worker of this run, dropped"));
+    }
+
+    /**
+     * Connects to the coordinator with a wrong token.
+     *
+     * @return everything it gets from the coordinator
+     */
+    private static byte[] intrude() {
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), PORT)) {
+                final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(LaneProtocol.HELLO);
+                out.writeUTF("wrong-" + TOKEN);
+                out.flush();
+                socket.setSoTimeout(10_000);
+                final ByteArrayOutputStream received = new ByteArrayOutputStream();
+                for (int b; (b = socket.getInputStream().read()) >= 0; ) {
+                    received.write(b);
+                }
+                return received.toByteArray();
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException(e);
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException interrupted) {
+                    throw new IllegalStateException(interrupted);
+                }
+            }
+        }
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.CoordinatorTest", coordinator = PORT, value = {
+            @Suite.SuiteClasses({Waiting.class, Remote1.class, Remote2.class, Remote3.class})
+    })
+    public static class Shared {
+    }
+
+    static void run() {
+        System.out.println("running in " + ManagementFactory.getRuntimeMXBean().getName());
+    }
+
+    public static class Waiting {
+        @Test
+        public void waitsForTheWorker() throws InterruptedException {
+            // the worker takes classes from the tail of the lane
+            final long deadline = System.currentTimeMillis() + 20_000;
+            while (!SuiteRun.current.saw("finished remote(org.densmnko.CoordinatorTest$Remote3)")
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            run();
+        }
+    }
+
+    public static class Remote1 {
+        @Test
+        public void remote() {
+            run();
+        }
+    }
+
+    public static class Remote2 {
+        @Test
+        public void remote() {
+            run();
+        }
+    }
+
+    public static class Remote3 {
+        @Test
+        public void remote() {
+            run();
+        }
+    }
+}
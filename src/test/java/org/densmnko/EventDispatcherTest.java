@@ -0,0 +1,77 @@
+package org.densmnko;
+
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.junit.runners.Suite;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventDispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void streamedEventsReachTheListenerWhileTheClassRuns() {
+        final SuiteRun run = SuiteRun.run(Streaming.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(Collections.singletonList(true), SuiteRun.notes("seen"));
+    }
+
+    @Test
+    public void bufferedEventsReachTheListenerAfterTheClass() {
+        final SuiteRun run = SuiteRun.run(Buffered.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(Collections.singletonList(false), SuiteRun.notes("seen"));
+        assertTrue(run.saw("finished a(org.densmnko.EventDispatcherTest$Live)"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.EventDispatcherTest", streaming = true, value = {
+            @Suite.SuiteClasses({Live.class}),
+            @Suite.SuiteClasses({Other.class})
+    })
+    public static class Streaming {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.EventDispatcherTest", value = {
+            @Suite.SuiteClasses({Live.class}),
+            @Suite.SuiteClasses({Other.class})
+    })
+    public static class Buffered {
+    }
+
+    @FixMethodOrder(MethodSorters.NAME_ASCENDING)
+    public static class Live {
+        @Test
+        public void a() {
+        }
+
+        @Test
+        public void b() throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 2000;
+            boolean seen;
+            while (!(seen = SuiteRun.current.saw("finished a(org.densmnko.EventDispatcherTest$Live)"))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            SuiteRun.note("seen", seen);
+        }
+    }
+
+    public static class Other {
+        @Test
+        public void other() {
+        }
+    }
+}
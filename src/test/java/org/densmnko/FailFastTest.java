@@ -0,0 +1,96 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FailFastTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void firstFailureStopsRunningClassesAndSkipsTheRest() {
+        final long started = System.currentTimeMillis();
+        final SuiteRun run = SuiteRun.run(Stopping.class, folder.getRoot());
+
+        assertTrue("running class was not interrupted", System.currentTimeMillis() - started < 10_000);
+        assertEquals(run.failures.toString(), 1, run.result.getFailureCount());
+        assertEquals("fails(org.densmnko.FailFastTest$Failing)", run.failures.get(0).getDescription().getDisplayName());
+        assertTrue(SuiteRun.notes("Later").isEmpty());
+        assertTrue(run.events.toString(), run.saw("ignored later(org.densmnko.FailFastTest$Later)"));
+        assertTrue(run.events.toString(), run.saw("assumption sleeps(org.densmnko.FailFastTest$Sleeping)"));
+        assertTrue(run.out, run.out.contains("tests not started are reported as ignored"));
+    }
+
+    @Test
+    public void firstFailureInterruptsMethodsRunningInParallel() {
+        final long started = System.currentTimeMillis();
+        final SuiteRun run = SuiteRun.run(StoppingMethods.class, folder.getRoot());
+
+        assertTrue("running methods were not interrupted", System.currentTimeMillis() - started < 10_000);
+        assertEquals(run.failures.toString(), 1, run.result.getFailureCount());
+        assertEquals("fails(org.densmnko.FailFastTest$Failing)", run.failures.get(0).getDescription().getDisplayName());
+        assertEquals(run.events.toString(), 2, run.count("assumption "));
+        assertTrue(run.events.toString(), run.saw("assumption sleeps(org.densmnko.FailFastTest$SleepingMethods)"));
+        assertTrue(run.events.toString(), run.saw("assumption alsoSleeps(org.densmnko.FailFastTest$SleepingMethods)"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.FailFastTest", failFast = 1, value = {
+            @Suite.SuiteClasses({Failing.class, Later.class}),
+            @Suite.SuiteClasses({Sleeping.class})
+    })
+    public static class Stopping {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.FailFastTest", failFast = 1, parallelMethods = SleepingMethods.class,
+            methodThreads = 2, value = {
+            @Suite.SuiteClasses({Failing.class}),
+            @Suite.SuiteClasses({SleepingMethods.class})
+    })
+    public static class StoppingMethods {
+    }
+
+    public static class Failing {
+        @Test
+        public void fails() throws InterruptedException {
+            // let the other lane start its class
+            Thread.sleep(200);
+            fail("first failure");
+        }
+    }
+
+    public static class Later {
+        @Test
+        public void later() {
+            SuiteRun.note("Later", true);
+        }
+    }
+
+    public static class Sleeping {
+        @Test
+        public void sleeps() throws InterruptedException {
+            Thread.sleep(30_000);
+        }
+    }
+
+    public static class SleepingMethods {
+        @Test
+        public void sleeps() throws InterruptedException {
+            Thread.sleep(30_000);
+        }
+
+        @Test
+        public void alsoSleeps() throws InterruptedException {
+            Thread.sleep(30_000);
+        }
+    }
+}
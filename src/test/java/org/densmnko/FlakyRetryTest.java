@@ -0,0 +1,77 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlakyRetryTest {
+
+    private static final String FLAKY = "flaky(org.densmnko.FlakyRetryTest$Flaky)";
+    private static final String BROKEN = "broken(org.densmnko.FlakyRetryTest$Broken)";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPassingOnRetryIsReportedPassed() throws IOException {
+        final SuiteRun run = SuiteRun.run(Retried.class, folder.getRoot());
+
+        assertEquals(2, run.result.getRunCount());
+        assertEquals(run.failures.toString(), 1, run.result.getFailureCount());
+        assertEquals(BROKEN, run.failures.get(0).getDescription().getDisplayName());
+        assertEquals(run.events.toString(), 0, run.count("failure " + FLAKY));
+        assertEquals(run.events.toString(), 1, run.count("finished " + FLAKY));
+        // every attempt runs in a class loader of its own
+        assertEquals(2, SuiteRun.notes("Flaky").size());
+        assertEquals(2, new HashSet<>(SuiteRun.notes("Flaky")).size());
+        assertEquals(3, SuiteRun.notes("Broken").size());
+        assertTrue(run.out, run.out.contains("flaky test " + FLAKY + " failed, passed on retry 1 of 2"));
+
+        final Properties history = new Properties();
+        try (InputStream in = new FileInputStream(new File(folder.getRoot(), "flaky.properties"))) {
+            history.load(in);
+        }
+        assertEquals("1,1", history.getProperty(FLAKY).replace(" ", ""));
+        assertEquals("1,0", history.getProperty(BROKEN).replace(" ", ""));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.FlakyRetryTest", retries = 2, value = {
+            @Suite.SuiteClasses({Flaky.class}),
+            @Suite.SuiteClasses({Broken.class})
+    })
+    public static class Retried {
+    }
+
+    public static class Flaky {
+        @Test
+        public void flaky() {
+            final boolean first = SuiteRun.notes("Flaky").isEmpty();
+            SuiteRun.note("Flaky", System.identityHashCode(Flaky.class.getClassLoader()));
+            if (first) {
+                fail("first attempt");
+            }
+        }
+    }
+
+    public static class Broken {
+        @Test
+        public void broken() {
+            SuiteRun.note("Broken", true);
+            fail("every attempt");
+        }
+    }
+}
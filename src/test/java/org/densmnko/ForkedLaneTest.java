@@ -0,0 +1,61 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.lang.management.ManagementFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ForkedLaneTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void classesRunInAnotherJvmAndReportBack() {
+        final SuiteRun run = SuiteRun.run(Forked.class, folder.getRoot());
+
+        assertEquals(2, run.result.getRunCount());
+        assertEquals(run.failures.toString(), 1, run.result.getFailureCount());
+        final Throwable failure = run.failures.get(0).getException();
+        assertTrue(failure.toString(), failure instanceof AssertionError);
+        assertTrue(failure.getMessage(), failure.getMessage().contains("failed in a fork"));
+
+        final Matcher jvm = Pattern.compile("running in (\\S+)").matcher(run.out);
+        if (!jvm.find()) {
+            fail("no output of the forked lane: " + run.out);
+        }
+        assertNotEquals(ManagementFactory.getRuntimeMXBean().getName(), jvm.group(1));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.ForkedLaneTest", fork = true, value = {
+            @Suite.SuiteClasses({Passing.class}),
+            @Suite.SuiteClasses({Failing.class})
+    })
+    public static class Forked {
+    }
+
+    public static class Passing {
+        @Test
+        public void passes() {
+            System.out.println("running in " + ManagementFactory.getRuntimeMXBean().getName());
+        }
+    }
+
+    public static class Failing {
+        @Test
+        public void fails() {
+            fail("failed in a fork");
+        }
+    }
+}
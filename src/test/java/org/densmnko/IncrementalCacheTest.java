@@ -0,0 +1,60 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IncrementalCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unchangedPassedClassIsReplayedRatherThanRun() {
+        final SuiteRun first = SuiteRun.run(Incremental.class, folder.getRoot());
+        assertEquals(2, first.result.getRunCount());
+        assertEquals(Collections.singletonList(true), SuiteRun.notes("Passing"));
+        assertEquals(Collections.singletonList(true), SuiteRun.notes("Failing"));
+
+        final SuiteRun second = SuiteRun.run(Incremental.class, folder.getRoot());
+
+        assertTrue(SuiteRun.notes("Passing").isEmpty());
+        assertTrue(second.out, second.out.contains("IncrementalCacheTest$Passing is unchanged since it passed"));
+        assertEquals(2, second.result.getRunCount());
+        assertEquals(1, second.result.getFailureCount());
+        assertTrue(second.events.toString(), second.saw("finished passes(org.densmnko.IncrementalCacheTest$Passing)"));
+        // failed classes are never cached
+        assertEquals(Collections.singletonList(true), SuiteRun.notes("Failing"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.IncrementalCacheTest", incremental = true, value = {
+            @Suite.SuiteClasses({Passing.class}),
+            @Suite.SuiteClasses({Failing.class})
+    })
+    public static class Incremental {
+    }
+
+    public static class Passing {
+        @Test
+        public void passes() {
+            SuiteRun.note("Passing", true);
+        }
+    }
+
+    public static class Failing {
+        @Test
+        public void fails() {
+            SuiteRun.note("Failing", true);
+            fail("always");
+        }
+    }
+}
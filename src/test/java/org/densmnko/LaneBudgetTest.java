@@ -0,0 +1,74 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LaneBudgetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final int processors = Runtime.getRuntime().availableProcessors();
+
+    @Test
+    public void oneLanePerProcessorAtMost() {
+        final int lanes = LaneBudget.lanes(1000, 1, true);
+
+        assertTrue(lanes + " lanes", lanes >= 1 && lanes <= processors);
+    }
+
+    @Test
+    public void noMoreLanesThanClasses() {
+        assertEquals(3, LaneBudget.lanes(3, 1, false));
+        assertEquals(1, LaneBudget.lanes(1, 1, true));
+    }
+
+    @Test
+    public void lanesTheMemoryCanNotAffordAreDropped() {
+        assertEquals(1, LaneBudget.lanes(1000, Integer.MAX_VALUE, false));
+    }
+
+    @Test
+    public void autoSuiteRunsOnTheBudgetedLanes() {
+        final SuiteRun run = SuiteRun.run(Auto.class, folder.getRoot());
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(3, run.result.getRunCount());
+
+        final Matcher budget = Pattern.compile("parallel-runner: (\\d+) lanes").matcher(run.out);
+        assertTrue(run.out, budget.find());
+        final int lanes = Integer.parseInt(budget.group(1));
+        assertTrue(lanes + " lanes", lanes >= 1 && lanes <= Math.min(3, processors));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LaneBudgetTest", lanes = ParallelSuiteRunner.Suites.AUTO, laneMemory = 1,
+            classes = {A.class, B.class, C.class})
+    public static class Auto {
+    }
+
+    public static class A {
+        @Test
+        public void a() {
+        }
+    }
+
+    public static class B {
+        @Test
+        public void b() {
+        }
+    }
+
+    public static class C {
+        @Test
+        public void c() {
+        }
+    }
+}
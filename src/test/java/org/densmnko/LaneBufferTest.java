@@ -0,0 +1,105 @@
+package org.densmnko;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LaneBufferTest {
+
+    @Test
+    public void spilledOutputIsWrittenBackInOrderAndItsFileDeleted() throws IOException {
+        final byte[] written = new byte[(int) LaneBuffer.SPILL_THRESHOLD + 3 * LaneBuffer.CHUNK_SIZE + 17];
+        for (int i = 0; i < written.length; i++) {
+            written[i] = (byte) (i % 251);
+        }
+        final Set<String> before = spills();
+        final LaneBuffer buffer = new LaneBuffer();
+        buffer.write(written[0]);
+        for (int off = 1, len = 1; off < written.length; off += len, len = len * 2 + 1) {
+            buffer.write(written, off, Math.min(len, written.length - off));
+        }
+
+        final CapturedOutput output = buffer.drain();
+        final Set<String> spilled = spills();
+        spilled.removeAll(before);
+        assertEquals("spill files " + spilled, 1, spilled.size());
+        assertEquals(written.length, output.size());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.writeTo(out);
+        assertArrayEquals(written, out.toByteArray());
+        assertFalse(new File(System.getProperty("java.io.tmpdir"), spilled.iterator().next()).exists());
+    }
+
+    @Test
+    public void failedSpillKeepsOutputInMemoryOnceAndIsNotRetried() throws IOException {
+        final byte[] written = new byte[(int) LaneBuffer.SPILL_THRESHOLD + 5 * LaneBuffer.CHUNK_SIZE + 17];
+        for (int i = 0; i < written.length; i++) {
+            written[i] = (byte) (i % 251);
+        }
+        final List<LaneBuffer.Spill> spills = new ArrayList<>();
+        final LaneBuffer buffer = new LaneBuffer() {
+            @Override
+            LaneBuffer.Spill newSpill() throws IOException {
+                final LaneBuffer.Spill spill = new LaneBuffer.Spill() {
+                    int appended;
+
+                    @Override
+                    void append(byte[] b, int len) throws IOException {
+                        if (++appended > 3) {
+                            throw new IOException("No space left on device");
+                        }
+                        super.append(b, len);
+                    }
+                };
+                spills.add(spill);
+                return spill;
+            }
+        };
+        for (int off = 0; off < written.length; off += 1000) {
+            buffer.write(written, off, Math.min(1000, written.length - off));
+        }
+
+        final CapturedOutput output = buffer.drain();
+        assertEquals(1, spills.size());
+        assertFalse(spills.get(0).file.exists());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.writeTo(out);
+        assertArrayEquals(written, out.toByteArray());
+    }
+
+    @Test
+    public void drainStartsTheBufferOver() throws IOException {
+        final LaneBuffer buffer = new LaneBuffer();
+        buffer.write("first".getBytes("UTF-8"), 0, 5);
+        assertEquals("first", text(buffer.drain()));
+
+        assertTrue(buffer.drain().isEmpty());
+        buffer.write("second".getBytes("UTF-8"), 0, 6);
+        assertEquals("second", text(buffer.drain()));
+    }
+
+    private static String text(CapturedOutput output) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.writeTo(out);
+        return out.toString("UTF-8");
+    }
+
+    private static Set<String> spills() {
+        final String[] names = new File(System.getProperty("java.io.tmpdir"))
+                .list((dir, name) -> name.startsWith("parallel-runner-") && name.endsWith(".out"));
+        return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+    }
+}
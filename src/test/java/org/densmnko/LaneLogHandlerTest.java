@@ -0,0 +1,72 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LaneLogHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void errorOutputAndLogRecordsAreKeptPerClass() {
+        final List<Handler> handlers = Arrays.asList(Logger.getLogger("").getHandlers());
+
+        final SuiteRun run = SuiteRun.run(Logging.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        for (String name : new String[]{"Left", "Right"}) {
+            final int first = run.err.indexOf("first err of " + name);
+            final int logged = run.err.indexOf("logged by " + name);
+            final int last = run.err.indexOf("last err of " + name);
+            assertTrue(run.err, first >= 0 && logged > first && last > logged);
+            final String other = name.equals("Left") ? "Right" : "Left";
+            assertFalse(run.err, run.err.substring(first, last).contains("of " + other));
+            assertFalse(run.out, run.out.contains("of " + name));
+        }
+        // console handlers are given back
+        assertEquals(handlers, Arrays.asList(Logger.getLogger("").getHandlers()));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LaneLogHandlerTest", value = {
+            @Suite.SuiteClasses({Left.class}),
+            @Suite.SuiteClasses({Right.class})
+    })
+    public static class Logging {
+    }
+
+    static void log(String name) throws InterruptedException {
+        System.err.println("first err of " + name);
+        Thread.sleep(100);
+        Logger.getLogger(LaneLogHandlerTest.class.getName()).warning("logged by " + name);
+        Thread.sleep(100);
+        System.err.println("last err of " + name);
+    }
+
+    public static class Left {
+        @Test
+        public void left() throws InterruptedException {
+            log("Left");
+        }
+    }
+
+    public static class Right {
+        @Test
+        public void right() throws InterruptedException {
+            log("Right");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LanePackerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void lanesStartWithTheirLongestClass() {
+        final TimingStore timings = new TimingStore(null);
+        timings.record(A.class.getName(), 100);
+        timings.record(B.class.getName(), 50);
+        timings.record(C.class.getName(), 40);
+        timings.record(D.class.getName(), 10);
+
+        final List<List<Class<?>>> lanes = LanePacker.pack(Arrays.asList(D.class, C.class, B.class, A.class), 2, timings);
+
+        assertEquals(Arrays.<Class<?>>asList(A.class), lanes.get(0));
+        assertEquals(Arrays.<Class<?>>asList(B.class, C.class, D.class), lanes.get(1));
+    }
+
+    @Test
+    public void classesWithoutHistoryGetTheMeanEstimate() {
+        final TimingStore timings = new TimingStore(null);
+        timings.record(A.class.getName(), 100);
+        timings.record(B.class.getName(), 20);
+
+        final List<List<Class<?>>> lanes = LanePacker.pack(Arrays.asList(B.class, C.class, A.class), 2, timings);
+
+        assertEquals(Arrays.<Class<?>>asList(A.class), lanes.get(0));
+        assertEquals(Arrays.<Class<?>>asList(C.class, B.class), lanes.get(1));
+    }
+
+    @Test
+    public void durationsAreKeptOnlyForPackedRuns() throws IOException {
+        final File timings = new File(folder.getRoot(), "timings.properties");
+
+        SuiteRun.run(Declared.class, folder.getRoot());
+        assertFalse(timings.exists());
+
+        final SuiteRun run = SuiteRun.run(Packed.class, folder.getRoot());
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(timings)) {
+            properties.load(in);
+        }
+        assertTrue(properties.containsKey(A.class.getName()));
+        assertTrue(properties.containsKey(B.class.getName()));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LanePackerTest", value = {
+            @Suite.SuiteClasses({A.class}),
+            @Suite.SuiteClasses({B.class})
+    })
+    public static class Declared {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LanePackerTest", classes = {A.class, B.class}, lanes = 2)
+    public static class Packed {
+    }
+
+    public static class A {
+        @Test
+        public void a() {
+        }
+    }
+
+    public static class B {
+        @Test
+        public void b() {
+        }
+    }
+
+    public static class C {
+        @Test
+        public void c() {
+        }
+    }
+
+    public static class D {
+        @Test
+        public void d() {
+        }
+    }
+}
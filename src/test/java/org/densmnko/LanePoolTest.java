@@ -0,0 +1,77 @@
+package org.densmnko;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LanePoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void closePool() {
+        LanePool.shared().close();
+    }
+
+    @Test
+    public void nextRunReusesLaneThreadsWithFreshClassLoaders() {
+        final SuiteRun first = SuiteRun.run(Reused.class, folder.getRoot());
+        assertTrue(first.failures.toString(), first.result.wasSuccessful());
+        final Set<Object> firstThreads = new HashSet<>(SuiteRun.notes("thread"));
+        final Set<Object> firstLoaders = new HashSet<>(SuiteRun.notes("loader"));
+
+        final SuiteRun second = SuiteRun.run(Reused.class, folder.getRoot());
+        assertTrue(second.failures.toString(), second.result.wasSuccessful());
+        final List<Object> secondThreads = SuiteRun.notes("thread");
+        final List<Object> secondLoaders = SuiteRun.notes("loader");
+
+        assertEquals(2, firstThreads.size());
+        assertEquals(firstThreads, new HashSet<>(secondThreads));
+        for (Object loader : secondLoaders) {
+            assertFalse(firstLoaders.contains(loader));
+        }
+        // output of the reused threads goes to the lanes of the second run
+        assertTrue(second.out, second.out.contains("output of Left"));
+        assertTrue(second.out, second.out.contains("output of Right"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LanePoolTest", reuseLanes = true, value = {
+            @Suite.SuiteClasses({Left.class}),
+            @Suite.SuiteClasses({Right.class})
+    })
+    public static class Reused {
+    }
+
+    static void lane(Class<?> type) {
+        SuiteRun.note("thread", Thread.currentThread());
+        SuiteRun.note("loader", type.getClassLoader());
+        System.out.println("output of " + type.getSimpleName());
+    }
+
+    public static class Left {
+        @Test
+        public void left() {
+            lane(Left.class);
+        }
+    }
+
+    public static class Right {
+        @Test
+        public void right() {
+            lane(Right.class);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.densmnko;
+
+import org.junit.ComparisonFailure;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LaneProtocolTest {
+
+    @Test
+    public void failuresOfAPeerComeBackAsStandInsOfTheSameKind() throws IOException {
+        final Throwable sent = new ComparisonFailure("values differ", "a", "b");
+        sent.initCause(new IOException("disk"));
+
+        final Throwable received = roundTrip(sent);
+
+        assertTrue(received.toString(), received instanceof AssertionError);
+        assertEquals("org.junit.ComparisonFailure", LaneProtocol.className(received));
+        assertEquals(sent.getMessage(), received.getMessage());
+        assertEquals(frames(sent), frames(received));
+        final Throwable cause = received.getCause();
+        assertTrue(cause.toString(), cause instanceof LaneProtocol.RemoteException);
+        assertEquals("java.io.IOException: disk", cause.toString());
+        assertNull(cause.getCause());
+    }
+
+    @Test
+    public void standInsTravelAsTheOriginalClass() throws IOException {
+        final Throwable received = roundTrip(roundTrip(new IllegalStateException()));
+
+        assertEquals("java.lang.IllegalStateException", received.toString());
+    }
+
+    @Test
+    public void deepCauseChainsAreCutOff() throws IOException {
+        Throwable sent = new RuntimeException("root");
+        for (int i = 0; i < 100; i++) {
+            sent = new RuntimeException("wrapper " + i, sent);
+        }
+
+        int depth = 0;
+        for (Throwable received = roundTrip(sent); received != null; received = received.getCause()) {
+            depth++;
+        }
+        assertTrue(depth + " causes", depth > 1 && depth < 100);
+    }
+
+    /**
+     * @return what is sent of the frames, module and class loader names of Java 9+ are not
+     */
+    private static List<String> frames(Throwable throwable) {
+        final List<String> frames = new ArrayList<>();
+        for (StackTraceElement frame : throwable.getStackTrace()) {
+            frames.add(frame.getClassName() + "." + frame.getMethodName() + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")");
+        }
+        return frames;
+    }
+
+    private static Throwable roundTrip(Throwable throwable) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            LaneProtocol.writeThrowable(out, throwable, 0);
+        }
+        return LaneProtocol.readThrowable(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 0);
+    }
+}
@@ -0,0 +1,126 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LaneRecyclerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recycledLaneGivesEveryClassFreshStaticState() {
+        final SuiteRun run = SuiteRun.run(Recycled.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(Arrays.asList(1, 1, 1), SuiteRun.notes("count"));
+        assertTrue(run.out, run.out.contains("lane class loaders recycled"));
+    }
+
+    @Test
+    public void laneKeepsStaticStateWithoutRecycling() {
+        final SuiteRun run = SuiteRun.run(Kept.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(Arrays.asList(1, 2, 3), SuiteRun.notes("count"));
+    }
+
+    @Test
+    public void retiredLoaderKeptByAThreadIsReported() {
+        final SuiteRun run = SuiteRun.run(Leaking.class, folder.getRoot());
+        try {
+            assertTrue(run.failures.toString(), run.result.wasSuccessful());
+            final String report = "parallel-runner: class loader of lane 0 retired after org.densmnko.LaneRecyclerTest$Leaky is still reachable from thread 'leaky-thread'";
+            assertTrue(run.out, run.out.contains(report));
+            assertEquals(run.out, run.out.indexOf("is still reachable"), run.out.lastIndexOf("is still reachable"));
+        } finally {
+            ((Thread) SuiteRun.notes("leaky").get(0)).interrupt();
+        }
+    }
+
+    @Test
+    public void noReportUnlessAskedFor() {
+        final SuiteRun run = SuiteRun.run(Recycled.class, folder.getRoot());
+
+        assertFalse(run.out, run.out.contains("is still reachable"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LaneRecyclerTest", initialize = false, recycleAfter = 1, value = {
+            @Suite.SuiteClasses({Counter1.class, Counter2.class, Counter3.class})
+    })
+    public static class Recycled {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LaneRecyclerTest", initialize = false, value = {
+            @Suite.SuiteClasses({Counter1.class, Counter2.class, Counter3.class})
+    })
+    public static class Kept {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LaneRecyclerTest", initialize = false, recycleAfter = 1, reportLeaks = true, value = {
+            @Suite.SuiteClasses({Leaky.class, Counter1.class, Counter2.class})
+    })
+    public static class Leaking {
+    }
+
+    /**
+     * Static state of the lane class loader.
+     */
+    public static class Shared {
+        static int count;
+    }
+
+    static void count() {
+        SuiteRun.note("count", ++Shared.count);
+    }
+
+    public static class Counter1 {
+        @Test
+        public void counts() {
+            count();
+        }
+    }
+
+    public static class Counter2 {
+        @Test
+        public void counts() {
+            count();
+        }
+    }
+
+    public static class Counter3 {
+        @Test
+        public void counts() {
+            count();
+        }
+    }
+
+    public static class Leaky {
+        @Test
+        public void startsAThread() {
+            final Thread thread = new Thread(() -> {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    // stopped by the test
+                }
+            }, "leaky-thread");
+            thread.setDaemon(true);
+            thread.setContextClassLoader(Leaky.class.getClassLoader());
+            thread.start();
+            SuiteRun.note("leaky", thread);
+        }
+    }
+}
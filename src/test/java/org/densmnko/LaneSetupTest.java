@@ -0,0 +1,92 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LaneSetupTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void lanesInitializeTheirClassesConcurrentlyBeforeTheRun() {
+        final SuiteRun run = SuiteRun.run(Eager.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(Arrays.asList(true, true), SuiteRun.notes("met"));
+        final String first = (String) SuiteRun.notes("First").get(0);
+        final String second = (String) SuiteRun.notes("Second").get(0);
+        assertTrue(first, first.startsWith("runner-"));
+        assertTrue(second, second.startsWith("runner-"));
+        assertNotEquals(first, second);
+        assertEquals(Arrays.asList(0, 0), SuiteRun.notes("events"));
+    }
+
+    @Test
+    public void lazyClassesInitializeWhenTheyRun() {
+        final SuiteRun run = SuiteRun.run(Lazy.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(2, SuiteRun.notes("events").size());
+        assertFalse(SuiteRun.notes("events").contains(0));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LaneSetupTest", value = {
+            @Suite.SuiteClasses({First.class}),
+            @Suite.SuiteClasses({Second.class})
+    })
+    public static class Eager {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.LaneSetupTest", initialize = false, value = {
+            @Suite.SuiteClasses({First.class}),
+            @Suite.SuiteClasses({Second.class})
+    })
+    public static class Lazy {
+    }
+
+    /**
+     * Notes the thread it is initialized on and waits for the other class to be initialized meanwhile.
+     */
+    static void initialize(String name, String other) {
+        SuiteRun.note(name, Thread.currentThread().getName());
+        SuiteRun.note("events", SuiteRun.current.count(""));
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (SuiteRun.notes(other).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        SuiteRun.note("met", !SuiteRun.notes(other).isEmpty());
+    }
+
+    public static class First {
+        static {
+            initialize("First", "Second");
+        }
+
+        @Test
+        public void first() {
+        }
+    }
+
+    public static class Second {
+        static {
+            initialize("Second", "First");
+        }
+
+        @Test
+        public void second() {
+        }
+    }
+}
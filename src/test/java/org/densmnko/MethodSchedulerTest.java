@@ -0,0 +1,77 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MethodSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void methodsOfOptedInClassesRunTogetherAndKeepTheirOutput() {
+        final SuiteRun run = SuiteRun.run(Methods.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(4, run.result.getRunCount());
+        assertEquals(3, SuiteRun.notes("thread").size());
+        for (Object thread : SuiteRun.notes("thread")) {
+            assertTrue(thread.toString(), thread.toString().matches("runner-\\d+-method-\\d+"));
+        }
+        for (String method : new String[]{"a", "b", "c"}) {
+            assertTrue(run.out, run.out.contains("output of " + method));
+        }
+        assertTrue(run.out, run.out.contains("output of serial"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.MethodSchedulerTest", parallelMethods = Parallel.class, methodThreads = 3, value = {
+            @Suite.SuiteClasses({Parallel.class}),
+            @Suite.SuiteClasses({Serial.class})
+    })
+    public static class Methods {
+    }
+
+    public static class Parallel {
+
+        private static final CountDownLatch ALL_STARTED = new CountDownLatch(3);
+
+        private static void together(String method) throws InterruptedException {
+            SuiteRun.note("thread", Thread.currentThread().getName());
+            System.out.println("output of " + method);
+            ALL_STARTED.countDown();
+            assertTrue("methods did not run together", ALL_STARTED.await(5, TimeUnit.SECONDS));
+        }
+
+        @Test
+        public void a() throws InterruptedException {
+            together("a");
+        }
+
+        @Test
+        public void b() throws InterruptedException {
+            together("b");
+        }
+
+        @Test
+        public void c() throws InterruptedException {
+            together("c");
+        }
+    }
+
+    public static class Serial {
+        @Test
+        public void serial() {
+            System.out.println("output of serial");
+        }
+    }
+}
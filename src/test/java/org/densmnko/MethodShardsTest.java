@@ -0,0 +1,132 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MethodShardsTest {
+
+    private static final String BIG = "org.densmnko.MethodShardsTest$Big";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shardedClassIsReportedOnceWithAllItsTests() throws IOException {
+        final SuiteRun run = SuiteRun.run(Sharded.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(7, run.result.getRunCount());
+        assertEquals(run.events.toString(), 1, run.count("suiteStarted " + BIG));
+        assertEquals(run.events.toString(), 1, run.count("suiteFinished " + BIG));
+        for (int i = 1; i <= 6; i++) {
+            assertEquals(run.events.toString(), 1, run.count("finished test" + i + "(" + BIG + ")"));
+        }
+        // every shard has a class loader of its own
+        assertEquals(3, new HashSet<>(SuiteRun.notes("loader")).size());
+
+        // the class is timed as a whole, not by its last shard
+        final Properties timings = new Properties();
+        try (InputStream in = new FileInputStream(new File(folder.getRoot(), "timings.properties"))) {
+            timings.load(in);
+        }
+        assertTrue(timings.toString(), Long.parseLong(timings.getProperty(BIG)) >= 6 * 100);
+    }
+
+    @Test
+    public void classListedInSeveralGroupsRunsEveryTestOnce() throws IOException {
+        final SuiteRun run = SuiteRun.run(ListedTwice.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(8, run.result.getRunCount());
+        assertEquals(run.events.toString(), 1, run.count("suiteFinished " + BIG));
+        for (int i = 1; i <= 6; i++) {
+            assertEquals(run.events.toString(), 1, run.count("finished test" + i + "(" + BIG + ")"));
+        }
+        assertEquals(4, new HashSet<>(SuiteRun.notes("loader")).size());
+
+        final Properties timings = new Properties();
+        try (InputStream in = new FileInputStream(new File(folder.getRoot(), "timings.properties"))) {
+            timings.load(in);
+        }
+        assertTrue(timings.toString(), timings.containsKey(BIG));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.MethodShardsTest", classes = {Big.class, Small.class}, lanes = 3,
+            shard = Big.class, shards = 3)
+    public static class Sharded {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.MethodShardsTest", shard = Big.class, value = {
+            @Suite.SuiteClasses({Big.class}),
+            @Suite.SuiteClasses({Small.class}),
+            @Suite.SuiteClasses({Big.class}),
+            @Suite.SuiteClasses({Tiny.class})
+    })
+    public static class ListedTwice {
+    }
+
+    public static class Big {
+
+        private static void test() throws InterruptedException {
+            SuiteRun.note("loader", System.identityHashCode(Big.class.getClassLoader()));
+            Thread.sleep(100);
+        }
+
+        @Test
+        public void test1() throws InterruptedException {
+            test();
+        }
+
+        @Test
+        public void test2() throws InterruptedException {
+            test();
+        }
+
+        @Test
+        public void test3() throws InterruptedException {
+            test();
+        }
+
+        @Test
+        public void test4() throws InterruptedException {
+            test();
+        }
+
+        @Test
+        public void test5() throws InterruptedException {
+            test();
+        }
+
+        @Test
+        public void test6() throws InterruptedException {
+            test();
+        }
+    }
+
+    public static class Small {
+        @Test
+        public void small() {
+        }
+    }
+
+    public static class Tiny {
+        @Test
+        public void tiny() {
+        }
+    }
+}
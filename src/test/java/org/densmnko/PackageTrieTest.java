@@ -0,0 +1,49 @@
+package org.densmnko;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackageTrieTest {
+
+    @Test
+    public void prefixesMatchAsStartsWithDoes() {
+        final PackageTrie trie = PackageTrie.of(new String[]{"org.densmnko", "com.acme.Fix"}, null);
+
+        assertTrue(trie.isIsolated("org.densmnko.Foo"));
+        assertTrue(trie.isIsolated("org.densmnko.Foo$Bar"));
+        assertTrue(trie.isIsolated("org.densmnkoTools"));
+        assertTrue(trie.isIsolated("com.acme.Fixture"));
+        assertFalse(trie.isIsolated("com.acme.Other"));
+        assertFalse(trie.isIsolated("org.dens"));
+        assertFalse(trie.isIsolated("org.junit.Test"));
+    }
+
+    @Test
+    public void longestMatchingPrefixDecides() {
+        final PackageTrie trie = PackageTrie.of(new String[]{"com.acme", "com.acme.shared.Local"}, new String[]{"com.acme.shared"});
+
+        assertTrue(trie.isIsolated("com.acme.App"));
+        assertFalse(trie.isIsolated("com.acme.shared.Cache"));
+        assertFalse(trie.isIsolated("com.acme.sharedState"));
+        assertTrue(trie.isIsolated("com.acme.shared.LocalCache"));
+    }
+
+    @Test
+    public void excludeWinsOverTheSameIsolatedPrefix() {
+        final PackageTrie trie = PackageTrie.of(new String[]{"com.acme"}, new String[]{"com.acme"});
+
+        assertFalse(trie.isIsolated("com.acme.App"));
+    }
+
+    @Test
+    public void resourcesFollowTheRulesOfTheirPackage() {
+        final PackageTrie trie = PackageTrie.of(new String[]{"com.acme"}, new String[]{"com.acme.shared"});
+
+        assertTrue(trie.isIsolatedResource("com/acme/app.properties"));
+        assertTrue(trie.isIsolatedResource("/com/acme/app.properties"));
+        assertFalse(trie.isIsolatedResource("com/acme/shared/app.properties"));
+        assertFalse(trie.isIsolatedResource("META-INF/MANIFEST.MF"));
+    }
+}
@@ -0,0 +1,62 @@
+package org.densmnko;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ParallelRunnerClassLoaderTest {
+
+    private final ClassLoader parent = getClass().getClassLoader();
+
+    @Test
+    public void isolatedClassesAreDefinedByTheLaneAndTheRestIsShared() throws ClassNotFoundException {
+        final ParallelRunnerClassLoader loader = new ParallelRunnerClassLoader(0, parent, new String[]{"org.densmnko.Foo"});
+
+        final Class<?> foo = loader.loadClass(Foo.class.getName());
+        assertSame(loader, foo.getClassLoader());
+        assertNotSame(Foo.class, foo);
+        assertSame(Bar.class, loader.loadClass(Bar.class.getName()));
+        assertSame(Test.class, loader.loadClass(Test.class.getName()));
+        // the runner is never isolated, even under an isolated prefix
+        assertSame(ParallelSuiteRunner.class, new ParallelRunnerClassLoader(0, parent, new String[]{"org.densmnko"})
+                .loadClass(ParallelSuiteRunner.class.getName()));
+    }
+
+    @Test
+    public void threadsLoadingTheSameClassGetTheSameClass() throws Exception {
+        final ParallelRunnerClassLoader loader = new ParallelRunnerClassLoader(0, parent, new String[]{"org.densmnko"});
+        final int threads = 8;
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<Class<?>>>> loaded = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                loaded.add(pool.submit((Callable<List<Class<?>>>) () -> {
+                    start.await();
+                    final List<Class<?>> classes = new ArrayList<>();
+                    for (String name : new String[]{"org.densmnko.Foo", "org.densmnko.Foo1", "org.densmnko.Bar", "org.densmnko.Bar1", "org.densmnko.ClassWithStatic"}) {
+                        classes.add(loader.loadClass(name));
+                    }
+                    return classes;
+                }));
+            }
+            final List<Class<?>> first = loaded.get(0).get();
+            for (Future<List<Class<?>>> classes : loaded) {
+                assertEquals(first, classes.get());
+            }
+            assertEquals(5, loader.getDefinedClasses());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
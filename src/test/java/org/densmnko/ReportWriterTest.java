@@ -0,0 +1,101 @@
+package org.densmnko;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReportWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void everyClassGetsAnXmlReportAndEveryEventAJsonLine() throws IOException {
+        final SuiteRun run = SuiteRun.run(Reported.class, folder.getRoot());
+        assertEquals(run.failures.toString(), 2, run.result.getFailureCount());
+
+        final File reports = new File(folder.getRoot(), "reports");
+        final String mixed = read(new File(reports, "TEST-org.densmnko.ReportWriterTest$Mixed.xml"));
+        assertTrue(mixed, mixed.contains("tests=\"4\" failures=\"1\" errors=\"1\" skipped=\"1\""));
+        assertTrue(mixed, mixed.contains("<testcase name=\"fails\" classname=\"org.densmnko.ReportWriterTest$Mixed\""));
+        final String passing = read(new File(reports, "TEST-org.densmnko.ReportWriterTest$Passing.xml"));
+        assertTrue(passing, passing.contains("tests=\"1\" failures=\"0\" errors=\"0\" skipped=\"0\""));
+
+        final List<String> events = Files.readAllLines(new File(reports, "events.jsonl").toPath(), StandardCharsets.UTF_8);
+        boolean failure = false;
+        for (String event : events) {
+            assertTrue(event, event.startsWith("{\"elapsedMillis\": ") && event.endsWith("}"));
+            failure |= event.contains("\"event\": \"testFailure\", \"class\": \"org.densmnko.ReportWriterTest$Mixed\", \"test\": \"fails\", "
+                    + "\"exception\": \"java.lang.AssertionError\", \"message\": \"reported\"");
+        }
+        assertTrue(events.toString(), failure);
+    }
+
+    @Test
+    public void noReportsByDefault() {
+        SuiteRun.run(Unreported.class, folder.getRoot());
+
+        assertFalse(new File(folder.getRoot(), "reports").exists());
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.ReportWriterTest", reports = true, value = {
+            @Suite.SuiteClasses({Mixed.class}),
+            @Suite.SuiteClasses({Passing.class})
+    })
+    public static class Reported {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.ReportWriterTest", value = {
+            @Suite.SuiteClasses({Mixed.class}),
+            @Suite.SuiteClasses({Passing.class})
+    })
+    public static class Unreported {
+    }
+
+    public static class Mixed {
+        @Test
+        public void passes() {
+        }
+
+        @Test
+        public void fails() {
+            fail("reported");
+        }
+
+        @Test
+        public void breaks() {
+            throw new IllegalStateException("broken");
+        }
+
+        @Ignore
+        @Test
+        public void skipped() {
+        }
+    }
+
+    public static class Passing {
+        @Test
+        public void passes() {
+        }
+    }
+}
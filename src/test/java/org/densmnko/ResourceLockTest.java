@@ -0,0 +1,105 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceLockTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writersNeverOverlapAndReadersShare() {
+        final SuiteRun run = SuiteRun.run(Locking.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(6, run.result.getRunCount());
+        final List<Object> a = SuiteRun.notes("WriterA");
+        final List<Object> b = SuiteRun.notes("WriterB");
+        final boolean aFirst = (Long) a.get(1) <= (Long) b.get(0);
+        final boolean bFirst = (Long) b.get(1) <= (Long) a.get(0);
+        assertTrue("writers overlapped: " + a + " " + b, aFirst || bFirst);
+        assertEquals(Arrays.asList(true, true), SuiteRun.notes("met"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.ResourceLockTest", value = {
+            @Suite.SuiteClasses({WriterA.class, Free1.class}),
+            @Suite.SuiteClasses({WriterB.class, Free2.class}),
+            @Suite.SuiteClasses({ReaderA.class}),
+            @Suite.SuiteClasses({ReaderB.class})
+    })
+    public static class Locking {
+    }
+
+    static void write(String name) throws InterruptedException {
+        SuiteRun.note(name, System.nanoTime());
+        Thread.sleep(300);
+        SuiteRun.note(name, System.nanoTime());
+    }
+
+    /**
+     * Waits for the other reader to hold the lock too.
+     */
+    static void read(String name, String other) throws InterruptedException {
+        SuiteRun.note(name, true);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (SuiteRun.notes(other).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        SuiteRun.note("met", !SuiteRun.notes(other).isEmpty());
+    }
+
+    @ResourceLock("db")
+    public static class WriterA {
+        @Test
+        public void writes() throws InterruptedException {
+            write("WriterA");
+        }
+    }
+
+    @ResourceLock("db")
+    public static class WriterB {
+        @Test
+        public void writes() throws InterruptedException {
+            write("WriterB");
+        }
+    }
+
+    @ResourceLock(value = "cache", mode = ResourceLock.Mode.READ)
+    public static class ReaderA {
+        @Test
+        public void reads() throws InterruptedException {
+            read("ReaderA", "ReaderB");
+        }
+    }
+
+    @ResourceLock(value = "cache", mode = ResourceLock.Mode.READ)
+    public static class ReaderB {
+        @Test
+        public void reads() throws InterruptedException {
+            read("ReaderB", "ReaderA");
+        }
+    }
+
+    public static class Free1 {
+        @Test
+        public void free() {
+        }
+    }
+
+    public static class Free2 {
+        @Test
+        public void free() {
+        }
+    }
+}
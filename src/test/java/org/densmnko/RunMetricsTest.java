@@ -0,0 +1,75 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RunMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void metricsOfEveryClassAreWrittenWhenAskedFor() throws IOException {
+        final SuiteRun run = SuiteRun.run(Measured.class, folder.getRoot());
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+
+        final String json = new String(Files.readAllBytes(new File(folder.getRoot(), "metrics.json").toPath()), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"wallMillis\": "));
+        assertTrue(json, json.contains("\"class\": \"org.densmnko.RunMetricsTest$Quiet\""));
+        final Matcher chatty = Pattern.compile("\"class\": \"org\\.densmnko\\.RunMetricsTest\\$Chatty\".*\"outputBytes\": (\\d+)").matcher(json);
+        assertTrue(json, chatty.find());
+        assertTrue(json, Long.parseLong(chatty.group(1)) >= 1000);
+    }
+
+    @Test
+    public void noMetricsByDefault() {
+        final SuiteRun run = SuiteRun.run(Unmeasured.class, folder.getRoot());
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+
+        assertFalse(new File(folder.getRoot(), "metrics.json").exists());
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.RunMetricsTest", metrics = true, value = {
+            @Suite.SuiteClasses({Chatty.class}),
+            @Suite.SuiteClasses({Quiet.class})
+    })
+    public static class Measured {
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.RunMetricsTest", value = {
+            @Suite.SuiteClasses({Chatty.class}),
+            @Suite.SuiteClasses({Quiet.class})
+    })
+    public static class Unmeasured {
+    }
+
+    public static class Chatty {
+        @Test
+        public void chatty() {
+            for (int i = 0; i < 100; i++) {
+                System.out.println("123456789");
+            }
+        }
+    }
+
+    public static class Quiet {
+        @Test
+        public void quiet() {
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.densmnko;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs a parallel suite the way a build tool does and keeps what its listener saw, for the tests of the runner.
+ * Fixtures of the suite tell what they observed through {@link #note(String, Object)}: this class is never isolated,
+ * so all lanes and the test share it. Public, as isolated classes are in a runtime package of their own.
+ */
+public final class SuiteRun extends RunListener {
+
+    private static final Map<String, List<Object>> NOTES = new ConcurrentHashMap<>();
+
+    public static volatile SuiteRun current;
+
+    final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    final List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+    Result result;
+    String out;
+    String err;
+
+    private SuiteRun() {
+    }
+
+    public static void note(String key, Object value) {
+        NOTES.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(value);
+    }
+
+    public static List<Object> notes(String key) {
+        final List<Object> notes = NOTES.get(key);
+        return notes == null ? Collections.emptyList() : new ArrayList<>(notes);
+    }
+
+    /**
+     * Runs the suite with its files kept in the directory and its output captured; notes of a previous run are
+     * dropped.
+     */
+    static SuiteRun run(Class<?> suite, File directory) {
+        return run(suite, directory, null);
+    }
+
+    /**
+     * @param listener another listener of the run, after this one, or <code>null</code>
+     */
+    static SuiteRun run(Class<?> suite, File directory, RunListener listener) {
+        NOTES.clear();
+        final SuiteRun run = new SuiteRun();
+        current = run;
+        final String previousDirectory = System.getProperty(TimingStore.DIRECTORY_PROPERTY);
+        final PrintStream previousOut = System.out;
+        final PrintStream previousErr = System.err;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setProperty(TimingStore.DIRECTORY_PROPERTY, directory.getAbsolutePath());
+        try {
+            // the runner takes the streams it writes to when it is created
+            System.setOut(new PrintStream(out, true, "UTF-8"));
+            System.setErr(new PrintStream(err, true, "UTF-8"));
+            final JUnitCore core = new JUnitCore();
+            core.addListener(run);
+            if (listener != null) {
+                core.addListener(listener);
+            }
+            run.result = core.run(suite);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            System.setOut(previousOut);
+            System.setErr(previousErr);
+            if (previousDirectory == null) {
+                System.clearProperty(TimingStore.DIRECTORY_PROPERTY);
+            } else {
+                System.setProperty(TimingStore.DIRECTORY_PROPERTY, previousDirectory);
+            }
+            current = null;
+        }
+        try {
+            run.out = out.toString("UTF-8");
+            run.err = err.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return run;
+    }
+
+    /**
+     * @return how many events of the listener start with the prefix, e.g. <code>"finished a(org.densmnko.X)"</code>
+     */
+    public int count(String prefix) {
+        synchronized (events) {
+            return (int) events.stream().filter(event -> event.startsWith(prefix)).count();
+        }
+    }
+
+    public boolean saw(String prefix) {
+        return count(prefix) > 0;
+    }
+
+    @Override
+    public void testRunStarted(Description description) {
+        events.add("runStarted");
+    }
+
+    @Override
+    public void testSuiteStarted(Description description) {
+        events.add("suiteStarted " + description.getDisplayName());
+    }
+
+    @Override
+    public void testSuiteFinished(Description description) {
+        events.add("suiteFinished " + description.getDisplayName());
+    }
+
+    @Override
+    public void testStarted(Description description) {
+        events.add("started " + description.getDisplayName());
+    }
+
+    @Override
+    public void testFailure(Failure failure) {
+        events.add("failure " + failure.getDescription().getDisplayName());
+        failures.add(failure);
+    }
+
+    @Override
+    public void testAssumptionFailure(Failure failure) {
+        events.add("assumption " + failure.getDescription().getDisplayName());
+    }
+
+    @Override
+    public void testIgnored(Description description) {
+        events.add("ignored " + description.getDisplayName());
+    }
+
+    @Override
+    public void testFinished(Description description) {
+        events.add("finished " + description.getDisplayName());
+    }
+}
@@ -0,0 +1,71 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void lanesRunOnVirtualThreads() {
+        assumeTrue("needs Java 21+", VirtualThreads.isAvailable());
+
+        final SuiteRun run = SuiteRun.run(Virtual.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(2, SuiteRun.notes("thread").size());
+        for (Object thread : SuiteRun.notes("thread")) {
+            assertTrue(thread.toString(), thread.toString().startsWith("runner-virtual-"));
+        }
+        assertTrue(run.out, run.out.contains("output of Left"));
+        assertTrue(run.out, run.out.contains("output of Right"));
+    }
+
+    @Test
+    public void suiteFailsWhereThereAreNoVirtualThreads() {
+        assumeFalse(VirtualThreads.isAvailable());
+
+        final SuiteRun run = SuiteRun.run(Virtual.class, folder.getRoot());
+
+        assertEquals(1, run.result.getFailureCount());
+        final String message = run.failures.get(0).getMessage();
+        assertTrue(message, message.contains("asks for virtual thread lanes, which need Java 21+"));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.VirtualThreadsTest", virtualThreads = true, value = {
+            @Suite.SuiteClasses({Left.class}),
+            @Suite.SuiteClasses({Right.class})
+    })
+    public static class Virtual {
+    }
+
+    static void lane(Class<?> type) {
+        SuiteRun.note("thread", Thread.currentThread().getName());
+        System.out.println("output of " + type.getSimpleName());
+    }
+
+    public static class Left {
+        @Test
+        public void left() {
+            lane(Left.class);
+        }
+    }
+
+    public static class Right {
+        @Test
+        public void right() {
+            lane(Right.class);
+        }
+    }
+}
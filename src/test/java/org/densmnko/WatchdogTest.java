@@ -0,0 +1,117 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.RunListener;
+import org.junit.runners.Suite;
+import org.junit.runners.model.TestTimedOutException;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WatchdogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hangingClassTimesOutWithADumpAndTheLaneGoesOn() {
+        final SuiteRun run = SuiteRun.run(Guarded.class, folder.getRoot());
+
+        assertEquals(run.failures.toString(), 1, run.result.getFailureCount());
+        final Throwable failure = run.failures.get(0).getException();
+        assertTrue(failure.toString(), failure instanceof TestTimedOutException);
+        assertEquals(1, failure.getSuppressed().length);
+        final String dump = failure.getSuppressed()[0].getMessage();
+        assertTrue(dump, dump.contains("runner threads"));
+        assertTrue(dump, dump.contains("WatchdogTest$Hanging.hangs"));
+        assertEquals(Collections.singletonList(true), SuiteRun.notes("After"));
+    }
+
+    @Test
+    public void listenerBlockingInReplayDoesNotStopOtherLanes() {
+        final SuiteRun run = SuiteRun.run(Replaying.class, folder.getRoot(), new RunListener() {
+            @Override
+            public void testFinished(Description description) {
+                if (description.getTestClass() != null && description.getTestClass().getName().equals(Replayed.class.getName())) {
+                    // holds the runner monitor until the other lane has run its class
+                    final long deadline = System.currentTimeMillis() + 10_000;
+                    while (SuiteRun.notes("Starting").isEmpty() && System.currentTimeMillis() < deadline) {
+                        Thread.yield();
+                    }
+                    SuiteRun.note("met", !SuiteRun.notes("Starting").isEmpty());
+                }
+            }
+        });
+
+        assertEquals(Collections.singletonList(true), SuiteRun.notes("met"));
+        assertEquals(run.failures.toString(), 1, run.result.getFailureCount());
+        assertEquals(Hanging.class.getName(), run.failures.get(0).getDescription().getClassName());
+        assertTrue(run.failures.get(0).getException() instanceof TestTimedOutException);
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.WatchdogTest", classTimeout = 1, value = {
+            @Suite.SuiteClasses({Hanging.class, After.class})
+    })
+    public static class Guarded {
+    }
+
+    /**
+     * The watchdog gives up on the hanging class while the listener replaying the first lane holds the runner monitor.
+     * Lanes re-create their classes before starting them, so the third lane needs the scheduler after that.
+     */
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.WatchdogTest", classTimeout = 1, recycleAfter = 1, value = {
+            @Suite.SuiteClasses({Replayed.class}),
+            @Suite.SuiteClasses({Hanging.class}),
+            @Suite.SuiteClasses({Starting.class})
+    })
+    public static class Replaying {
+    }
+
+    public static class Replayed {
+        @Test
+        public void replayed() {
+        }
+    }
+
+    public static class Starting {
+
+        static {
+            // the lane initializes it before the run and once more when it re-creates it
+            if (!SuiteRun.notes("Starting initialized").isEmpty()) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            SuiteRun.note("Starting initialized", true);
+        }
+
+        @Test
+        public void starting() {
+            SuiteRun.note("Starting", true);
+        }
+    }
+
+    public static class Hanging {
+        @Test
+        public void hangs() throws InterruptedException {
+            Thread.sleep(60_000);
+        }
+    }
+
+    public static class After {
+        @Test
+        public void after() {
+            SuiteRun.note("After", true);
+        }
+    }
+}
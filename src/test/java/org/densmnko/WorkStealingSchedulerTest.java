@@ -0,0 +1,91 @@
+package org.densmnko;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.net.URLClassLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WorkStealingSchedulerTest {
+
+    private static final String RESOURCE = WorkStealingSchedulerTest.class.getName().replace('.', '/') + ".class";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void idleLaneStealsQueuedClassesIntoSpareClassLoaders() {
+        final SuiteRun run = SuiteRun.run(Stealing.class, folder.getRoot());
+
+        assertTrue(run.failures.toString(), run.result.wasSuccessful());
+        assertEquals(5, run.result.getRunCount());
+        final Object quick = SuiteRun.notes("Quick").get(0);
+        final Object slow = SuiteRun.notes("Slow").get(0);
+        int stolen = 0;
+        for (String queued : new String[]{"Queued1", "Queued2", "Queued3"}) {
+            assertEquals(queued, 1, SuiteRun.notes(queued).size());
+            final Object loader = SuiteRun.notes(queued).get(0);
+            assertNotSame(queued, quick, loader);
+            if (loader != slow) {
+                stolen++;
+                // the spare class loader is dropped once its class is done
+                assertNull(queued, ((URLClassLoader) loader).findResource(RESOURCE));
+            }
+        }
+        assertTrue("no class was stolen", stolen > 0);
+        assertNotNull(((URLClassLoader) quick).findResource(RESOURCE));
+        assertNotNull(((URLClassLoader) slow).findResource(RESOURCE));
+    }
+
+    @RunWith(ParallelSuiteRunner.class)
+    @ParallelSuiteRunner.Suites(isolate = "org.densmnko.WorkStealingSchedulerTest", stealing = true, value = {
+            @Suite.SuiteClasses({Quick.class}),
+            @Suite.SuiteClasses({Slow.class, Queued1.class, Queued2.class, Queued3.class})
+    })
+    public static class Stealing {
+    }
+
+    public static class Quick {
+        @Test
+        public void quick() {
+            SuiteRun.note("Quick", getClass().getClassLoader());
+        }
+    }
+
+    public static class Slow {
+        @Test
+        public void slow() throws InterruptedException {
+            SuiteRun.note("Slow", getClass().getClassLoader());
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class Queued1 {
+        @Test
+        public void queued() {
+            SuiteRun.note("Queued1", getClass().getClassLoader());
+        }
+    }
+
+    public static class Queued2 {
+        @Test
+        public void queued() {
+            SuiteRun.note("Queued2", getClass().getClassLoader());
+        }
+    }
+
+    public static class Queued3 {
+        @Test
+        public void queued() {
+            SuiteRun.note("Queued3", getClass().getClassLoader());
+        }
+    }
+}